@@ -0,0 +1,192 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntSupplier;
+
+/**
+ * The EngineBenchmark class measures the throughput and allocation rate of the headless game engine and the AI.
+ * Every benchmark runs a number of warmup iterations, followed by measured iterations of a fixed duration,
+ * and reports operations per second and bytes allocated per operation (like the JMH gc profiler's
+ * gc.alloc.rate.norm), so engine changes can be compared against a baseline run.
+ * A benchmark may have a setup that runs before every operation, for example to clear a cache. The setup is not
+ * timed: such benchmarks time every operation on its own, and their allocation rate includes the setup.
+ * <p>
+ * Usage: {@code java EngineBenchmark [name filter]}. Only benchmarks whose name contains the filter are run.
+ * Results are printed as a table on standard output.
+ */
+public class EngineBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    private static volatile int sink; // consumes benchmark results, so the JIT cannot remove the work
+
+    private final List<String> names = new ArrayList<>();
+    private final List<IntSupplier> operations = new ArrayList<>();
+    private final List<Runnable> setups = new ArrayList<>(); // null for benchmarks without a setup
+
+    /**
+     * Runs all benchmarks matching the filter given as the first argument.
+     *
+     * @param args an optional benchmark name filter
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        EngineBenchmark benchmark = new EngineBenchmark();
+        benchmark.registerEngineBenchmarks();
+        benchmark.registerAiBenchmarks();
+        benchmark.run(filter);
+    }
+
+    /**
+     * Registers the benchmarks of the board model: win and draw detection on the classic and the large board.
+     */
+    private void registerEngineBenchmarks() {
+        GameState midgame = position(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE, 4, 0, 8, 2, 6);
+        GameState full = position(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE, 0, 1, 2, 4, 3, 5, 7, 6, 8);
+        add("GameState.hasWon (3x3)", () -> midgame.hasWon(GameState.X) ? 1 : 0);
+        add("GameState.isWin (3x3 bitboard)", () -> GameState.isWin(midgame.getBoard(GameState.X)) ? 1 : 0);
+        add("GameState.isFull (3x3)", () -> full.isFull() ? 1 : 0);
+        add("GameState.place+remove (3x3)", () -> {
+            midgame.place(1, GameState.O);
+            int winner = midgame.getWinner();
+            midgame.remove(1);
+            return winner;
+        });
+
+        GameState large = position(15, 5, 112, 113, 97, 127, 98, 111, 126, 96, 140, 82);
+        add("GameState.place+remove (15x15)", () -> {
+            large.place(114, GameState.X);
+            int winner = large.getWinner();
+            large.remove(114);
+            return winner;
+        });
+        add("GameState.isWinningMove (15x15)", () -> large.isWinningMove(112) ? 1 : 0);
+        int[] candidates = new int[large.getCellCount()];
+        add("GameState.collectCandidateMoves (15x15)", () -> large.collectCandidateMoves(candidates));
+    }
+
+    /**
+     * Registers the benchmarks of the AI: opening book lookups, the alpha-beta search and the large board engines.
+     */
+    private void registerAiBenchmarks() {
+        int[][] classicPositions = {{}, {4}, {4, 0}, {4, 0, 8, 2}, {0, 4, 8, 2, 6}};
+        for (int[] moves : classicPositions) {
+            GameState state = position(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE, moves);
+            char toMove = moves.length % 2 == 0 ? GameState.X : GameState.O;
+            TicTacToeEnemy enemy = new TicTacToeEnemy(state, toMove);
+            String label = " (" + moves.length + " moves played)";
+            add("TicTacToeEnemy.findBestMove" + label, enemy::findBestMove);
+            TicTacToeEnemy searcher = new TicTacToeEnemy(state, toMove);
+            add("TicTacToeEnemy.searchBestMove" + label, searcher.getTranspositionTable()::clear,
+                    searcher::searchBestMove); // a full search, not a lookup of the previous result
+        }
+
+        GameState large = position(15, 5, 112, 113, 97, 127, 98, 111);
+        IterativeDeepeningSearch deepening = new IterativeDeepeningSearch(10);
+        add("IterativeDeepeningSearch 10 ms (15x15)", () -> deepening.findBestMove(large, GameState.X));
+        IterativeDeepeningSearch parallel = new IterativeDeepeningSearch(10, ForkJoinPool.commonPool());
+        add("IterativeDeepeningSearch 10 ms parallel (15x15)", () -> parallel.findBestMove(large, GameState.X));
+        MonteCarloTreeSearch monteCarlo = new MonteCarloTreeSearch(1_000, 0, 1);
+        add("MonteCarloTreeSearch 1000 playouts (3x3)",
+                () -> monteCarlo.findBestMove(position(3, 3, 4, 0), GameState.X));
+    }
+
+    /**
+     * Creates a position by playing the given cells, alternating between X and O, starting with X.
+     */
+    private static GameState position(int size, int winLength, int... moves) {
+        GameState state = new GameState(size, winLength);
+        char symbol = GameState.X;
+        for (int move : moves) {
+            state.place(move, symbol);
+            symbol = GameState.opponent(symbol);
+        }
+        return state;
+    }
+
+    private void add(String name, IntSupplier operation) {
+        add(name, null, operation);
+    }
+
+    private void add(String name, Runnable setup, IntSupplier operation) {
+        names.add(name);
+        setups.add(setup);
+        operations.add(operation);
+    }
+
+    /**
+     * Runs the registered benchmarks whose name contains the filter and prints the results.
+     */
+    private void run(String filter) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.printf("%-50s %16s %10s %12s%n", "Benchmark", "ops/s", "error", "B/op");
+        for (int b = 0; b < names.size(); b++) {
+            if (!names.get(b).contains(filter)) {
+                continue;
+            }
+            IntSupplier operation = operations.get(b);
+            Runnable setup = setups.get(b);
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                measure(setup, operation);
+            }
+
+            double[] throughput = new double[MEASUREMENT_ITERATIONS];
+            long totalOperations = 0;
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                long[] result = measure(setup, operation);
+                throughput[i] = result[0] * 1e9 / result[1];
+                totalOperations += result[0];
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            double mean = 0;
+            for (double value : throughput) {
+                mean += value / MEASUREMENT_ITERATIONS;
+            }
+            double variance = 0;
+            for (double value : throughput) {
+                variance += (value - mean) * (value - mean) / (MEASUREMENT_ITERATIONS - 1);
+            }
+            System.out.printf("%-50s %16.1f %10.1f %12.1f%n", names.get(b), mean, Math.sqrt(variance),
+                    (double) allocated / totalOperations);
+        }
+    }
+
+    /**
+     * Runs the operation repeatedly for one iteration, with the setup before every operation if there is one.
+     *
+     * @return the number of operations that ran and the nanoseconds they took, without the setups
+     */
+    private static long[] measure(Runnable setup, IntSupplier operation) {
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_NANOS;
+        long count = 0;
+        long timed = 0;
+        int result = 0;
+        if (setup == null) {
+            do {
+                for (int i = 0; i < 64; i++) {
+                    result += operation.getAsInt();
+                }
+                count += 64;
+            } while (System.nanoTime() < deadline);
+            timed = System.nanoTime() - start;
+        } else {
+            do {
+                setup.run();
+                long operationStart = System.nanoTime();
+                result += operation.getAsInt();
+                timed += System.nanoTime() - operationStart;
+                count++;
+            } while (System.nanoTime() < deadline);
+        }
+        sink = result;
+        return new long[]{count, timed};
+    }
+}
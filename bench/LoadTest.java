@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LoadTest class simulates many online players at once and reports how fast their moves reach the opponent.
+ * Every match has two bot clients that play scripted rounds against each other through a {@link MoveChannel}: a bot
+ * that receives a move answers with its own move right away, until the match has played its rounds.
+ * The moves of a match are drawn from a random generator seeded with the number of the match, so every run plays the
+ * same games.
+ * <p>
+ * Usage: {@code java LoadTest [target] [matches] [rounds]}, with the defaults {@code server}, 1000 matches and 10
+ * rounds. The targets are:
+ * <ul>
+ *     <li>{@code server}: a {@link GameServer} started in this process, on a free port.</li>
+ *     <li>{@code host:port}: a game server that is already running.</li>
+ *     <li>{@code local}: {@link LocalMoveChannel} hubs, to measure the clients without a network.</li>
+ *     <li>{@code database}: the legacy {@link DatabaseConnector}, against the configured MySQL database.</li>
+ * </ul>
+ * Bots do not need a thread each: the socket clients share the {@link ClientEventLoop}, and answers are computed on a
+ * small pool with one thread per core.
+ * The report shows the move throughput, the p50, p90, p99 and maximum time from sending a move to its arrival at the
+ * opponent, and the errors: moves the server refused, and matches that did not finish in time.
+ */
+public class LoadTest {
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final ExecutorService bots = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final int rounds;
+    private final long[] latencies;
+    private final AtomicInteger latencyCount = new AtomicInteger();
+    private final AtomicLong refused = new AtomicLong();
+    private final CountDownLatch finished;
+
+    private LoadTest(int matches, int rounds) {
+        this.rounds = rounds;
+        latencies = new long[matches * rounds * GameState.CELL_COUNT];
+        finished = new CountDownLatch(matches);
+    }
+
+    /**
+     * Runs the load test and prints the report.
+     *
+     * @param args the target, the number of matches and the number of rounds per match
+     * @throws IOException          if the game server cannot be started
+     * @throws InterruptedException if interrupted while waiting for the matches
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String target = args.length > 0 ? args[0] : "server";
+        int matchCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        GameServer server = null;
+        String host = "localhost";
+        int port = 0;
+        if (target.equals("server")) {
+            server = new GameServer(0);
+            server.start();
+            port = server.getPort();
+        } else if (target.contains(":")) {
+            host = target.substring(0, target.lastIndexOf(':'));
+            port = Integer.parseInt(target.substring(target.lastIndexOf(':') + 1));
+        }
+        long firstMatchId = System.currentTimeMillis() << 12; // unused by earlier runs against the same server
+
+        LoadTest test = new LoadTest(matchCount, rounds);
+        Match[] matches = new Match[matchCount];
+        long start = System.nanoTime();
+        for (int i = 0; i < matchCount; i++) {
+            long matchId = firstMatchId + i;
+            MoveChannel x;
+            MoveChannel o;
+            if (target.equals("local")) {
+                LocalMoveChannel.Hub hub = new LocalMoveChannel.Hub();
+                x = hub.connect();
+                o = hub.connect();
+            } else if (target.equals("database")) {
+                x = new DatabaseConnector("X", matchId);
+                o = new DatabaseConnector("O", matchId);
+            } else {
+                x = new SocketMoveChannel(host, port, matchId, GameState.X);
+                o = new SocketMoveChannel(host, port, matchId, GameState.O);
+            }
+            matches[i] = test.new Match(i, x, o, server != null || target.contains(":"));
+        }
+
+        boolean done = test.finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        for (Match match : matches) {
+            match.x.close();
+            match.o.close();
+        }
+        test.bots.shutdown();
+        if (server != null) {
+            server.close();
+        }
+        test.print(target, matchCount, elapsed, done);
+    }
+
+    private void print(String target, int matchCount, long elapsedNanos, boolean done) {
+        int count = Math.min(latencyCount.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Target: %s, %d matches (%d clients), %d rounds each%n", target, matchCount, 2 * matchCount,
+                rounds);
+        System.out.printf("Moves: %d in %.2f s, %.0f moves/s%n", count, seconds, count / seconds);
+        System.out.printf("Propagation latency: p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        long unfinished = finished.getCount();
+        System.out.printf("Errors: %d refused moves, %d unfinished matches (%.2f%% of matches)%s%n", refused.get(),
+                unfinished, 100.0 * unfinished / matchCount, done ? "" : ", timed out");
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * The Match class is one scripted match between two bots. The bots take turns, so only one of them touches the
+     * board at a time; the move hand-over through the channel orders their accesses.
+     */
+    private final class Match {
+
+        private final MoveChannel x;
+        private final MoveChannel o;
+        private final GameState state = new GameState();
+        private final SplittableRandom script;
+        private final int[] empty = new int[GameState.CELL_COUNT];
+        private final AtomicInteger joined = new AtomicInteger();
+        private volatile long sentNanos;
+        private int round;
+
+        private Match(int number, MoveChannel x, MoveChannel o, boolean snapshotsOnJoin) {
+            this.x = x;
+            this.o = o;
+            script = new SplittableRandom(number);
+            x.setListener(new Bot(x, GameState.X, snapshotsOnJoin));
+            o.setListener(new Bot(o, GameState.O, snapshotsOnJoin));
+            if (!snapshotsOnJoin) {
+                bots.execute(() -> move(x, GameState.X));
+            }
+        }
+
+        /**
+         * Makes the next scripted move and sends it. A move that ends the round clears the board for the next one,
+         * like the server does.
+         */
+        private void move(MoveChannel channel, char symbol) {
+            int count = 0;
+            for (int cell = 0; cell < GameState.CELL_COUNT; cell++) {
+                if (state.isEmpty(cell)) {
+                    empty[count++] = cell;
+                }
+            }
+            int cell = empty[script.nextInt(count)];
+            state.place(cell, symbol);
+            if (state.isOver()) {
+                state.reset();
+                round++;
+            }
+            sentNanos = System.nanoTime();
+            channel.sendMove(cell, symbol);
+        }
+
+        /**
+         * Called on the bot pool when a move of the opponent arrived: answers it, unless it ended the last round.
+         */
+        private void answer(MoveChannel channel, char symbol) {
+            if (round == rounds) {
+                finished.countDown();
+                return;
+            }
+            move(channel, symbol);
+        }
+
+        /**
+         * The Bot class is the listener of one client of the match.
+         */
+        private final class Bot implements MoveChannel.Listener {
+
+            private final MoveChannel channel;
+            private final char symbol;
+            private boolean snapshotExpected;
+
+            private Bot(MoveChannel channel, char symbol, boolean snapshotsOnJoin) {
+                this.channel = channel;
+                this.symbol = symbol;
+                this.snapshotExpected = snapshotsOnJoin;
+            }
+
+            @Override
+            public void onMove(int index, char opponent) {
+                int slot = latencyCount.getAndIncrement();
+                if (slot < latencies.length) {
+                    latencies[slot] = System.nanoTime() - sentNanos;
+                }
+                bots.execute(() -> answer(channel, symbol));
+            }
+
+            @Override
+            public void onSnapshot(GameState snapshot, char toMove) {
+                if (!snapshotExpected) {
+                    refused.incrementAndGet(); // the server refused a move and rolled the board back
+                    return;
+                }
+                snapshotExpected = false;
+                if (joined.incrementAndGet() == 2) {
+                    bots.execute(() -> move(x, GameState.X)); // both players are in the match
+                }
+            }
+        }
+    }
+}
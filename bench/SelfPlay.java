@@ -0,0 +1,167 @@
+import java.util.SplittableRandom;
+
+/**
+ * The SelfPlay class plays many games without a user interface, on all cores, and reports how fast the engine and
+ * the AI play and how the games end. It is the tool for capacity planning and the regression gate for engine changes.
+ * <p>
+ * Usage: {@code java SelfPlay [games] [mode] [size] [win length] [ms per move]}, with the defaults
+ * 1000000 games, mode {@code ai}, the classic 3x3 board and {@value IterativeDeepeningSearch#DEFAULT_TIME_BUDGET_MILLIS}
+ * ms per move on larger boards. The modes are:
+ * <ul>
+ *     <li>{@code ai}: the AI plays both sides.</li>
+ *     <li>{@code random}: a player that picks a random empty cell plays against the AI, taking turns at playing X.</li>
+ * </ul>
+ * Every thread owns its boards and AI players, so the threads share nothing but the final counts.
+ * On the classic board the AI plays perfectly, so a game it loses (or, in {@code ai} mode, a game that is not a draw)
+ * is a bug. The harness exits with status 1 if that happens.
+ */
+public class SelfPlay {
+
+    private static final int RANDOM = 0;
+    private static final int AI = 1;
+
+    private final int mode;
+    private final int size;
+    private final int winLength;
+    private final long millisPerMove;
+
+    // Results of one thread, summed up after all threads finished
+    private long xWins;
+    private long oWins;
+    private long draws;
+    private long aiLosses;
+    private long aiMoves;
+    private long aiMoveNanos;
+    private long maxAiMoveNanos;
+    private long moves;
+
+    private SelfPlay(int mode, int size, int winLength, long millisPerMove) {
+        this.mode = mode;
+        this.size = size;
+        this.winLength = winLength;
+        this.millisPerMove = millisPerMove;
+    }
+
+    /**
+     * Plays the games and prints the report.
+     *
+     * @param args the number of games, the mode, the board size, the win length and the time per move
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int mode = args.length > 1 && args[1].equals("random") ? RANDOM : AI;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : GameState.CLASSIC_SIZE;
+        int winLength = args.length > 3 ? Integer.parseInt(args[3]) : Math.min(size, 5);
+        long millisPerMove = args.length > 4 ? Long.parseLong(args[4])
+                : IterativeDeepeningSearch.DEFAULT_TIME_BUDGET_MILLIS;
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        SelfPlay[] workers = new SelfPlay[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        long start = System.nanoTime();
+        for (int i = 0; i < threadCount; i++) {
+            SelfPlay worker = new SelfPlay(mode, size, winLength, millisPerMove);
+            long share = games / threadCount + (i < games % threadCount ? 1 : 0);
+            long seed = i;
+            workers[i] = worker;
+            threads[i] = new Thread(() -> worker.play(share, seed), "self-play-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        SelfPlay total = new SelfPlay(mode, size, winLength, millisPerMove);
+        for (SelfPlay worker : workers) {
+            total.add(worker);
+        }
+        total.print(games, threadCount, elapsed);
+        if (total.isRegression()) {
+            System.out.println("REGRESSION: the AI does not play the classic board perfectly");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays the given number of games on the calling thread.
+     */
+    private void play(long games, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        GameState state = new GameState(size, winLength);
+        TicTacToeEnemy aiX = new TicTacToeEnemy(state, GameState.X, millisPerMove);
+        TicTacToeEnemy aiO = new TicTacToeEnemy(state, GameState.O, millisPerMove);
+        int[] empty = new int[state.getCellCount()];
+
+        for (long game = 0; game < games; game++) {
+            state.reset();
+            char aiSymbol = mode == AI ? GameState.EMPTY : game % 2 == 0 ? GameState.O : GameState.X;
+            char toMove = GameState.X;
+            while (!state.isOver()) {
+                if (toMove == aiSymbol || mode == AI) {
+                    long moveStart = System.nanoTime();
+                    (toMove == GameState.X ? aiX : aiO).makeMove();
+                    long nanos = System.nanoTime() - moveStart;
+                    aiMoves++;
+                    aiMoveNanos += nanos;
+                    maxAiMoveNanos = Math.max(maxAiMoveNanos, nanos);
+                } else {
+                    state.place(randomEmptyCell(state, empty, random), toMove);
+                }
+                moves++;
+                toMove = GameState.opponent(toMove);
+            }
+
+            char winner = state.getWinner();
+            if (winner == GameState.X) {
+                xWins++;
+            } else if (winner == GameState.O) {
+                oWins++;
+            } else {
+                draws++;
+            }
+            if (winner != GameState.EMPTY && (mode == AI || winner != aiSymbol)) {
+                aiLosses++;
+            }
+        }
+    }
+
+    private static int randomEmptyCell(GameState state, int[] empty, SplittableRandom random) {
+        int count = 0;
+        for (int cell = 0; cell < state.getCellCount(); cell++) {
+            if (state.isEmpty(cell)) {
+                empty[count++] = cell;
+            }
+        }
+        return empty[random.nextInt(count)];
+    }
+
+    private void add(SelfPlay other) {
+        xWins += other.xWins;
+        oWins += other.oWins;
+        draws += other.draws;
+        aiLosses += other.aiLosses;
+        aiMoves += other.aiMoves;
+        aiMoveNanos += other.aiMoveNanos;
+        maxAiMoveNanos = Math.max(maxAiMoveNanos, other.maxAiMoveNanos);
+        moves += other.moves;
+    }
+
+    private boolean isRegression() {
+        return size == GameState.CLASSIC_SIZE && winLength == GameState.CLASSIC_SIZE && aiLosses > 0;
+    }
+
+    private void print(long games, int threadCount, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Mode: %s, board %dx%d with %d in a row, %d threads%n",
+                mode == AI ? "AI vs AI" : "random vs AI", size, size, winLength, threadCount);
+        System.out.printf("Games: %d in %.2f s, %.0f games/s, %.0f moves/s%n", games, seconds, games / seconds,
+                moves / seconds);
+        System.out.printf("AI move latency: %.2f us average, %.2f ms max over %d moves%n",
+                aiMoves == 0 ? 0 : aiMoveNanos / 1e3 / aiMoves, maxAiMoveNanos / 1e6, aiMoves);
+        System.out.printf("X wins: %d (%.2f%%), O wins: %d (%.2f%%), draws: %d (%.2f%%)%n",
+                xWins, 100.0 * xWins / games, oWins, 100.0 * oWins / games, draws, 100.0 * draws / games);
+        System.out.printf("Games lost by the AI: %d%n", aiLosses);
+    }
+}
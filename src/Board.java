@@ -7,26 +7,42 @@ import java.util.Objects;
  * The Board class represents a simple Tic-Tac-Toe game implemented as a JFrame.
  * It allows two players to play the game by clicking on the buttons representing the game board.
  * The game keeps track of the number of wins for each player and the number of draws.
- * The class uses Java Swing for the graphical user interface.
+ * The class uses Java Swing for the graphical user interface and renders a GameState, which is the source of truth
+ * for the symbols on the board.
  * Author: Daniel Dmytryszyn
  */
 public class Board extends JFrame {
 
     private final ArrayList<JButton> buttons = new ArrayList<>();
+    private final GameState state;
     private boolean player = true;
 
     private int winCountX = 0;
     private int winCountO = 0;
+    private int drawCount = 0;
 
     public static final int SYMBOL_FONT_SIZE = 20;
     public static final int NORMAL_FONT_SIZE = 5;
 
     /**
-     * Constructs a new Board instance.
+     * Constructs a new Board instance with the classic 3x3 board.
      * Initializes the JFrame with the game board and sets up the necessary components.
      */
     public Board() {
+        this(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE);
+    }
+
+    /**
+     * Constructs a new Board instance with the given board size and win length.
+     * Initializes the JFrame with the game board and sets up the necessary components.
+     *
+     * @param size      the number of rows and columns of the board
+     * @param winLength the number of symbols in a row needed to win
+     */
+    public Board(int size, int winLength) {
         super("The active player is player: X");
+        state = new GameState(size, winLength);
+        Metrics.monitorEventDispatchThread();
         createUI();
         createButtons();
         addButtons();
@@ -37,8 +53,8 @@ public class Board extends JFrame {
      * Sets the layout, size, and visibility of the JFrame.
      */
     private void createUI() {
-        setLayout(new GridLayout(3, 3));
-        setBounds(0, 0, 600, 400);
+        setLayout(new GridLayout(state.getSize(), state.getSize()));
+        setBounds(0, 0, Math.max(600, state.getSize() * 50), Math.max(400, state.getSize() * 40));
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         setMinimumSize(new Dimension(getBounds().width, getBounds().height));
@@ -66,7 +82,7 @@ public class Board extends JFrame {
      * Creates the buttons representing the game board.
      */
     public void createButtons() {
-        for (int y = 0; y < 9; y++) {
+        for (int y = 0; y < state.getCellCount(); y++) {
             JButton button = initializeButton();
             buttons.add(button);
         }
@@ -93,19 +109,20 @@ public class Board extends JFrame {
      * If neither, it continues the game.
      */
     public void checkBoardState() {
-        if (checkWin("X")) {
+        if (state.hasWon(GameState.X)) {
             writeWinMessage("X");
             return;
         }
-        if (checkWin("O")) {
+        if (state.hasWon(GameState.O)) {
             writeWinMessage("0");
             return;
         }
 
-        if (isFull()) {
+        if (state.isFull()) {
             changeFontSizes(NORMAL_FONT_SIZE);
             writeToAllButtons("Draw, click to reset".toUpperCase());
             setTitle("Draw".toUpperCase());
+            drawCount++;
         }
     }
 
@@ -142,56 +159,72 @@ public class Board extends JFrame {
     }
 
     /**
-     * Clears the text of all the buttons.
+     * Clears the game state and the text of all the buttons.
      */
     public void clearButtons() {
+        state.reset();
         buttons.forEach(jButton -> jButton.setText(""));
     }
 
     /**
-     * Checks if the game board is full (all buttons are filled).
+     * Places the given symbol on the given cell of the game state and renders it on the matching button.
      *
-     * @return true if the game board is full, false otherwise
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) to place
+     * @return true if the symbol was placed, false if the cell is already occupied
      */
-    public boolean isFull() {
-        long emptyButtonCount = buttons.stream().filter(jButton -> jButton.getText().equals("")).count();
-        return emptyButtonCount == 0;
+    public boolean placeSymbol(int index, char symbol) {
+        if (!state.place(index, symbol)) {
+            return false;
+        }
+        buttons.get(index).setText(Character.toString(symbol));
+        return true;
     }
 
     /**
-     * Checks if the given symbol has won the game by checking all possible winning combinations.
+     * Replaces the symbols on the board with the ones of the given state,
+     * for example to roll back moves that were shown before the server refused them.
      *
-     * @param symbol the symbol (X or O) to check
-     * @return true if the symbol has won, false otherwise
+     * @param source the state to show
      */
-    private boolean checkWin(String symbol) {
-        return win(symbol, buttons);
+    public void loadState(GameState source) {
+        changeFontSizes(SYMBOL_FONT_SIZE);
+        clearButtons();
+        for (int i = 0; i < source.getCellCount(); i++) {
+            char symbol = source.getSymbol(i);
+            if (symbol != GameState.EMPTY) {
+                placeSymbol(i, symbol);
+            }
+        }
     }
 
     /**
-     * Checks if the given symbol has won the game by checking all possible winning combinations.
+     * Checks if the given cell of the game board is empty.
      *
-     * @param symbol  the symbol (X or O) to check
-     * @param buttons the list of buttons representing the game board
-     * @return true if the symbol has won, false otherwise
-     */
-    static boolean win(String symbol, ArrayList<JButton> buttons) {
-        for (int i = 0; i < 9; i += 3) {
-            if (buttons.get(i).getText().equals(symbol) && buttons.get(i + 1).getText().equals(symbol) && buttons.get(i + 2).getText().equals(symbol)) {
-                return true;
-            }
-        }
+     * @param index the index of the cell
+     * @return true if the cell is empty, false otherwise
+     */
+    public boolean isCellEmpty(int index) {
+        return state.isEmpty(index);
+    }
 
-        for (int i = 0; i < 3; i++) {
-            if (buttons.get(i).getText().equals(symbol) && buttons.get(i + 3).getText().equals(symbol) && buttons.get(i + 6).getText().equals(symbol)) {
-                return true;
-            }
-        }
+    /**
+     * Checks if the game board is full (all cells are occupied).
+     *
+     * @return true if the game board is full, false otherwise
+     */
+    public boolean isFull() {
+        return state.isFull();
+    }
 
-        if (buttons.get(0).getText().equals(symbol) && buttons.get(4).getText().equals(symbol) && buttons.get(8).getText().equals(symbol)) {
-            return true;
-        }
-        return buttons.get(2).getText().equals(symbol) && buttons.get(4).getText().equals(symbol) && buttons.get(6).getText().equals(symbol);
+    /**
+     * Checks if the current round is over, either because a player has won or because the board is full.
+     * The next click on the board resets it.
+     *
+     * @return true if the round is over, false otherwise
+     */
+    public boolean isRoundOver() {
+        return state.isOver();
     }
 
     /**
@@ -201,6 +234,13 @@ public class Board extends JFrame {
         return buttons;
     }
 
+    /**
+     * returns the game state rendered by this board.
+     */
+    public GameState getGameState() {
+        return state;
+    }
+
     /**
      * returns the boolean value of player.
      */
@@ -222,6 +262,13 @@ public class Board extends JFrame {
         return winCountO;
     }
 
+    /**
+     * returns the integer value of drawCount.
+     */
+    public int getDrawCount() {
+        return drawCount;
+    }
+
     /**
      * sets the boolean value of player.
      */
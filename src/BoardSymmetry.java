@@ -0,0 +1,87 @@
+/**
+ * The BoardSymmetry class maps 3x3 bitboards onto the 8 symmetries of the board
+ * (4 rotations, each optionally mirrored).
+ * Positions that only differ by a rotation or reflection have the same value, so the search
+ * can share results between them by using the canonical key of a position.
+ */
+public final class BoardSymmetry {
+
+    public static final int SYMMETRY_COUNT = 8;
+
+    /**
+     * For each symmetry, the cell that cell i is moved to.
+     */
+    private static final int[][] CELL_MAPPINGS = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 8}, // identity
+            {2, 5, 8, 1, 4, 7, 0, 3, 6}, // rotate 90 degrees
+            {8, 7, 6, 5, 4, 3, 2, 1, 0}, // rotate 180 degrees
+            {6, 3, 0, 7, 4, 1, 8, 5, 2}, // rotate 270 degrees
+            {2, 1, 0, 5, 4, 3, 8, 7, 6}, // mirror horizontally
+            {0, 3, 6, 1, 4, 7, 2, 5, 8}, // mirror along the main diagonal
+            {6, 7, 8, 3, 4, 5, 0, 1, 2}, // mirror vertically
+            {8, 5, 2, 7, 4, 1, 6, 3, 0}  // mirror along the anti-diagonal
+    };
+
+    /**
+     * TRANSFORMS[s][board] is the bitboard board transformed by symmetry s.
+     */
+    private static final int[][] TRANSFORMS = new int[SYMMETRY_COUNT][GameState.FULL_BOARD + 1];
+
+    static {
+        for (int s = 0; s < SYMMETRY_COUNT; s++) {
+            for (int board = 0; board <= GameState.FULL_BOARD; board++) {
+                int transformed = 0;
+                for (int cell = 0; cell < GameState.CELL_COUNT; cell++) {
+                    if ((board & (1 << cell)) != 0) {
+                        transformed |= 1 << CELL_MAPPINGS[s][cell];
+                    }
+                }
+                TRANSFORMS[s][board] = transformed;
+            }
+        }
+    }
+
+    private BoardSymmetry() {
+    }
+
+    /**
+     * Transforms a bitboard with the given symmetry.
+     *
+     * @param symmetry the index of the symmetry (0-7)
+     * @param board    the bitboard to transform
+     * @return the transformed bitboard
+     */
+    public static int transform(int symmetry, int board) {
+        return TRANSFORMS[symmetry][board];
+    }
+
+    /**
+     * Returns the key of a position, without any symmetry reduction.
+     * The first bitboard is stored in the low 9 bits and the second one in the next 9 bits.
+     *
+     * @param mine   the bitboard of the player to move
+     * @param theirs the bitboard of the other player
+     * @return the key of the position
+     */
+    public static int key(int mine, int theirs) {
+        return mine | theirs << GameState.CELL_COUNT;
+    }
+
+    /**
+     * Returns the canonical key of a position: the smallest key among all 8 symmetric variants of the position.
+     *
+     * @param mine   the bitboard of the player to move
+     * @param theirs the bitboard of the other player
+     * @return the canonical key of the position
+     */
+    public static int canonicalKey(int mine, int theirs) {
+        int best = key(mine, theirs);
+        for (int s = 1; s < SYMMETRY_COUNT; s++) {
+            int key = key(TRANSFORMS[s][mine], TRANSFORMS[s][theirs]);
+            if (key < best) {
+                best = key;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The ClientEventLoop class runs the network I/O of all online clients of the process on one thread,
+ * with a non-blocking selector. A JVM running many clients, for example bot clients in a load test, therefore does
+ * not need a thread per connection, and no caller ever waits for the network: work is handed to the loop with
+ * {@link #execute(Runnable)} and runs there.
+ * Handlers are called on the loop thread and must not block.
+ */
+public final class ClientEventLoop {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private ClientEventLoop() {
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Thread thread = new Thread(this::run, "client-io");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the event loop shared by all clients of the process, starting it on first use.
+     *
+     * @return the shared event loop
+     */
+    public static ClientEventLoop getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     *
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registers a channel with the loop. Must be called on the loop thread.
+     *
+     * @param channel the non-blocking channel
+     * @param ops     the operations to wait for
+     * @param handler the handler to call when the channel is ready
+     * @return the selection key of the channel
+     * @throws ClosedChannelException if the channel is closed
+     */
+    public SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    runSafely(task);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        Handler handler = (Handler) key.attachment();
+                        runSafely(() -> handler.onReady(key));
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // one broken client must not stop the loop for all others
+        }
+    }
+
+    /**
+     * The Handler interface is called by the loop when a registered channel is ready.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Called on the loop thread when the channel is ready for one of the operations it waits for.
+         *
+         * @param key the selection key of the channel
+         */
+        void onReady(SelectionKey key);
+    }
+
+    /**
+     * Lazily starts the shared event loop the first time it is used.
+     */
+    private static final class Holder {
+        private static final ClientEventLoop INSTANCE = new ClientEventLoop();
+    }
+}
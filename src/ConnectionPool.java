@@ -0,0 +1,134 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ConnectionPool class keeps a bounded number of JDBC connections open and lends them out.
+ * At most {@code maxSize} connections exist at once; a caller that finds all of them in use waits until one is
+ * returned, so a burst of requests never opens a burst of new connections.
+ * A connection that was idle for more than {@value #VALIDATION_IDLE_MILLIS} ms is checked before it is lent out, and
+ * only that one connection is replaced if it broke. Connections that were used more recently are lent out without a
+ * check, so a busy pool does not add a round trip to every query.
+ * The pool is thread-safe.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long VALIDATION_IDLE_MILLIS = 5000;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new ConnectionPool. Connections are opened lazily, when they are first needed.
+     *
+     * @param url                 the JDBC url of the database
+     * @param username            the user name
+     * @param password            the password
+     * @param maxSize             the maximum number of open connections
+     * @param borrowTimeoutMillis how long {@link #borrow()} waits for a free connection
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Lends out a connection. It must be given back with {@link #release(Connection)}.
+     *
+     * @return an open connection
+     * @throws SQLException if no connection became free in time, or a new connection could not be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No database connection became free within " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            IdleConnection entry;
+            while ((entry = idle.pollFirst()) != null) {
+                long idleNanos = System.nanoTime() - entry.releasedNanos();
+                if (idleNanos <= VALIDATION_IDLE_MILLIS * 1_000_000
+                        || entry.connection().isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return entry.connection();
+                }
+                closeQuietly(entry.connection());
+            }
+            return DriverManager.getConnection(url, username, password);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool.
+     * A connection that was closed by the caller is dropped, and a new one is opened when it is needed.
+     *
+     * @param connection the connection returned by {@link #borrow()}
+     */
+    public void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+            } else {
+                idle.offerFirst(new IdleConnection(connection, System.nanoTime())); // the most recently used connection is the most likely to be alive
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closeQuietly(entry.connection());
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * An idle connection and when it was given back.
+     *
+     * @param connection    the connection
+     * @param releasedNanos when the connection was released, from {@link System#nanoTime()}
+     */
+    private record IdleConnection(Connection connection, long releasedNanos) {
+    }
+}
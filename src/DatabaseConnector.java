@@ -1,159 +1,263 @@
-import java.sql.*;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
- * The DatabaseConnector class handles the connection and interaction with a MySQL database.
- * It provides methods to check for updates in the database, reset moves, and add moves to the database.
- * It uses JDBC to establish a connection with the database.
+ * The DatabaseConnector class exchanges the moves of one match through the MySQL database.
+ * It is the legacy MoveChannel: moves are written to the moves table, and the opponent's moves are found by
+ * polling the table every second. The {@link GameServer} pushes moves instead and should be preferred.
+ * Only the moves after the last one seen are read, see {@link MoveStore}.
+ * The polls run in the {@link MatchScope} of the match, never on the calling thread. So does the start of the match:
+ * the first task of the scope opens the move store and replays the moves made so far, and polling starts after it. Moves sent
+ * before that are kept and written once the match has started, so the constructor never waits for the database.
+ * There is no server to check the moves, so every move is checked against a replica of the board that is built from
+ * the moves in sequence order, starting with the first move of the match, so a player who joins or restarts in the
+ * middle of a round checks the next moves against the right board. Rows that are not valid moves are ignored, and
+ * counted in the {@value Metrics#DB_INVALID_MOVES} counter like invalid moves of this player, which are not sent.
+ * If the current round has moves when the match starts, its board is passed to the listener as a snapshot.
  * Author: Daniel Dmytryszyn
  */
-public class DatabaseConnector {
+public class DatabaseConnector implements MoveChannel {
 
-    private Connection connection;
+    private static final long START_RETRY_MILLIS = 1000;
 
-    // Connection parameters
-    String url = "jdbc:mysql://195.179.236.154:3306/u457888522_firstDB";
-    String username = "u457888522_daniel";
-    String password = "Password123";
-
-    Board board;
-
-    TimerTask task;
+    private final Supplier<MoveStore> stores;
+    private volatile MoveStore store; // opened by the first task of the scope
+    private final MoveWriteBehind writer;
+    private final String sign;
+    private final long matchId;
+    private final MatchScope scope = new MatchScope();
+    private final LongAdder invalidMoves = Metrics.counter(Metrics.DB_INVALID_MOVES);
+    private volatile Listener listener;
+    private int lastSeq; // the sequence number of the last move seen or sent, guarded by this
+    private final GameState replica = new GameState(); // guarded by this
+    private char toMove = GameState.X; // guarded by this
+    private boolean started; // guarded by this
+    private final List<Integer> movesBeforeStart = new ArrayList<>(); // packed moves, guarded by this
 
     /**
-     * Constructs a DatabaseConnector object with the specified Board instance.
-     * Initializes the database connection using JDBC.
-     * Resets the moves in the database.
+     * Constructs a DatabaseConnector object for the player with the specified sign in the specified match,
+     * using the move store and write-behind queue shared by all matches of the process.
+     * Moves that were made in the match before are not passed to the listener. The shared move store is connected in the background.
      *
-     * @param board the Board instance associated with the database connector
+     * @param sign    the sign (X or O) of this player
+     * @param matchId the id of the match
      */
-    public DatabaseConnector(Board board) {
-        this.board = board;
-        try {
-            // Register JDBC driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            // Establish a connection
-            connection = DriverManager.getConnection(url, username, password);
-        } catch (ClassNotFoundException | SQLException e) {
-            throw new RuntimeException(e);
-        }
-        resetMoves();
+    public DatabaseConnector(String sign, long matchId) {
+        this(MoveStore::getInstance, MoveWriteBehind.getInstance(), sign, matchId);
     }
 
     /**
-     * Checks for updates in the moves table of the database for the specified sign.
-     * Runs as a TimerTask at regular intervals.
-     * Updates the board if there are new moves in the database.
+     * Constructs a DatabaseConnector object for the player with the specified sign in the specified match.
+     * Moves that were made in the match before are not passed to the listener.
      *
-     * @param sign the sign (X or O) to check for updates
+     * @param store   the store that holds the moves
+     * @param writer  the queue that writes the moves of this player to the store
+     * @param sign    the sign (X or O) of this player
+     * @param matchId the id of the match
      */
-    public void checkForUpdates(String sign) {
-        task = new TimerTask() {
-            public void run() {
-                try {
-                    // Execute a query to check if there are any records in the moves table
-                    String queryCheck = "SELECT COUNT(*) FROM moves";
-                    Statement statementCheck = connection.createStatement();
-                    ResultSet resultSetCheck = statementCheck.executeQuery(queryCheck);
-
-                    resultSetCheck.next();
-                    int count = resultSetCheck.getInt(1);
-
-                    if (count == 0) {
-                        // No moves in the moves table, handle the case accordingly
-                        resultSetCheck.close();
-                        statementCheck.close();
-                        return;
-                    }
-
-                    // Execute a query to check for updates
-                    String query = "SELECT * FROM moves";
-                    Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                    ResultSet resultSet = statement.executeQuery(query);
-
-                    System.out.println("Runnable is running");
-
-                    while (resultSet.next()) {
-                        int id = resultSet.getInt("id") + 1;
-
-                        String symbol = resultSet.getString("sign");
-                        if (symbol.equalsIgnoreCase(sign)) {
-                            return;
-                        }
-                        String opponent = sign.equalsIgnoreCase("X") ? "O" : "X";
-                        if (id != 0) {
-                            System.out.println(id + 1);
-                            System.out.println("There was an update in the database");
-                            board.getButtons().get(id - 1).setText(opponent);
-                            resetMoves();
-
-                            board.checkBoardState();
+    public DatabaseConnector(MoveStore store, MoveWriteBehind writer, String sign, long matchId) {
+        this(() -> store, writer, sign, matchId);
+    }
 
-                            board.setPlayer(true);
+    private DatabaseConnector(Supplier<MoveStore> stores, MoveWriteBehind writer, String sign, long matchId) {
+        this.stores = stores;
+        this.writer = writer;
+        this.sign = sign;
+        this.matchId = matchId;
+        scope.submit(this::start);
+    }
 
-                            if (board.isFull()) {
-                                resetBoard();
-                            }
-                        }
-                    }
+    /**
+     * Opens the move store and replays the moves of the match on the replica. Runs as the first task in the match
+     * scope, and again after a delay if the database cannot be reached.
+     * Then writes the moves that were sent in the meantime, and starts polling if there is a listener.
+     */
+    private void start() {
+        List<MoveStore.Move> history;
+        try {
+            store = stores.get();
+            history = store.movesAfter(matchId, 0);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                scope.schedule(this::start, START_RETRY_MILLIS);
+            } catch (RejectedExecutionException closed) {
+                // the match was closed in the meantime
+            }
+            return;
+        } catch (RuntimeException | LinkageError e) {
+            e.printStackTrace(); // the shared move store cannot be created, this match stays offline
+            return;
+        }
 
-                    resultSet.close();
-                    statement.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        boolean poll;
+        synchronized (this) {
+            for (MoveStore.Move move : history) {
+                if (advanceTo(move.seq()) && !apply(move.cell(), move.sign())) {
+                    invalidMoves.increment(); // ignored, like the polls do
                 }
             }
-        };
+            started = true;
+            for (int packed : movesBeforeStart) {
+                write(MoveProtocol.cellOf(packed), MoveProtocol.symbolOf(packed));
+            }
+            movesBeforeStart.clear();
+            poll = listener != null;
+        }
+        if (poll) {
+            checkForUpdates();
+        }
+    }
 
-        Timer timer = new Timer();
+    /**
+     * Checks for new moves of the match in the database.
+     * Runs in the match scope at regular intervals.
+     * First passes the board of the current round to the listener as a snapshot, if the round has moves.
+     * Passes the new moves of the opponent to the listener.
+     */
+    private void checkForUpdates() {
+        GameState round = currentRound();
+        if (round.getMoveCount() > 0) {
+            listener.onSnapshot(round, currentToMove());
+        }
         long delay = 0;
         long period = 1000; // Check for updates every 1 second
-        timer.schedule(task, delay, period);
+        Histogram pollCycle = Metrics.histogram(Metrics.POLL_CYCLE);
+        scope.scheduleWithFixedDelay(() -> {
+            long start = System.nanoTime();
+            try {
+                for (MoveStore.Move move : store.movesAfter(matchId, lastSeen())) {
+                    if (!advanceTo(move.seq()) || move.sign() == Character.toUpperCase(sign.charAt(0))) {
+                        continue;
+                    }
+                    if (!apply(move.cell(), move.sign())) {
+                        invalidMoves.increment(); // ignored
+                        continue;
+                    }
+                    listener.onMove(move.cell(), move.sign());
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                pollCycle.recordSince(start);
+            }
+        }, delay, period);
     }
 
-    public void resetBoard() {
+    private synchronized int lastSeen() {
+        return lastSeq;
+    }
 
-        board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
+    /**
+     * Moves the last seen sequence number forward.
+     *
+     * @param seq the sequence number of a move read from the database
+     * @return true if the move is new, false if it was seen or sent before
+     */
+    private synchronized boolean advanceTo(int seq) {
+        if (seq <= lastSeq) {
+            return false;
+        }
+        lastSeq = seq;
+        return true;
+    }
+
+    private synchronized GameState currentRound() {
+        return new GameState(replica);
+    }
+
+    private synchronized char currentToMove() {
+        return toMove;
+    }
 
-        this.resetMoves();
-        board.clearButtons();
+    private synchronized int nextSeq() {
+        return ++lastSeq;
     }
 
     /**
-     * Resets the moves in the moves table of the database.
+     * Plays a move on the replica of the board, if it is valid.
+     *
+     * @param cell   the index of the cell
+     * @param symbol the symbol (X or O) of the player
+     * @return true if the move was valid, false otherwise
      */
-    public void resetMoves() {
-        String query = "DELETE FROM moves";
+    private synchronized boolean apply(int cell, char symbol) {
+        if (symbol != toMove || cell < 0 || cell >= replica.getCellCount() || !replica.place(cell, symbol)) {
+            return false;
+        }
+        toMove = GameState.opponent(symbol);
+        if (replica.isOver()) {
+            replica.reset();
+        }
+        return true;
+    }
 
-        try {
-            if (!connection.isValid(2)) {
-                connection = DriverManager.getConnection(url, username, password);
-            }
+    @Override
+    public void sendMove(int index, char symbol) {
+        addMoveToDatabase(index, Character.toString(symbol));
+    }
 
-            Statement statement = connection.createStatement();
-            statement.executeUpdate(query);
-            statement.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    /**
+     * Sets the listener and starts checking for updates in the database, once the match has started.
+     *
+     * @param listener the listener to notify
+     */
+    @Override
+    public void setListener(Listener listener) {
+        boolean poll;
+        synchronized (this) {
+            poll = this.listener == null && started;
+            this.listener = listener;
+        }
+        if (poll) {
+            checkForUpdates();
         }
     }
 
     /**
-     * Adds a move to the moves table of the database with the specified index and sign.
+     * Stops checking for updates. Moves that were sent are still written by the write-behind queue.
+     * The shared move store stays open for other matches.
+     */
+    @Override
+    public void close() {
+        scope.close();
+    }
+
+    /**
+     * Adds a move to the moves table of the database with the specified index and sign,
+     * as the next move of the match. Returns right away: the move is handed off to the write-behind queue, which
+     * never blocks the caller and flushes the hand-offs when the game exits, see {@link MoveWriteBehind}.
+     *
+     * Moves sent before the match has started are written right after it started.
      *
      * @param i    the index of the move
      * @param sign the sign (X or O) of the move
      */
     public void addMoveToDatabase(int i, String sign) {
-        String query = "INSERT INTO moves (id, sign) VALUES (" + i + ", '" + sign + "')";
+        char symbol = Character.toUpperCase(sign.charAt(0));
+        synchronized (this) {
+            if (!started) {
+                movesBeforeStart.add(MoveProtocol.pack(i, symbol));
+                return;
+            }
+        }
+        write(i, symbol);
+    }
+
+    private void write(int i, char symbol) {
+        if (!apply(i, symbol)) {
+            invalidMoves.increment(); // not sent
+            return;
+        }
+        MoveStore.Move move = new MoveStore.Move(matchId, nextSeq(), i, symbol);
         try {
-            Statement statement = connection.createStatement();
-            statement.executeUpdate(query);
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            System.out.println("There was a problem when adding the move to the database");
+            writer.submitAsync(move);
+        } catch (IllegalStateException e) {
+            Metrics.counter(Metrics.DB_WRITE_ERRORS).increment(); // the write-behind queue is closed
         }
     }
 }
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The GameLog class is an append-only log of every move and every finished round, kept in local files instead of
+ * the database. Statistics and replays scan the files directly.
+ * <p>
+ * The log is a directory of segment files of {@value #DEFAULT_SEGMENT_SIZE} bytes each. A segment is memory-mapped
+ * while it is written, so appending a record is a few writes into memory, without a system call. When a segment is
+ * full the next one is created. Every segment starts with a header of {@value #RECORD_SIZE} bytes, followed by
+ * fixed-size records:
+ * <pre>
+ *  0 type        MOVE or END (0 marks the end of the written records)
+ *  1 symbol      the player who moved, or the winner of the round (EMPTY for a draw)
+ *  2 size        the size of the board
+ *  3 win length  the number of symbols in a row needed to win
+ *  4 seq         the sequence number of the move, or of the last move of the round
+ *  8 match id
+ * 16 time        milliseconds since the epoch
+ * 24 cell        the index of the cell, or the number of moves of the round
+ * 28 CRC32       of the first 28 bytes
+ * </pre>
+ * A record whose checksum does not match was torn by a crash and ends the segment. On open, writing resumes at the
+ * end of the last valid record of the newest segment.
+ * <p>
+ * Appending is thread-safe. Records reach the operating system as soon as they are appended, so they survive a crash
+ * of the process; {@link #flush()} forces them to the disk.
+ */
+public class GameLog implements AutoCloseable {
+
+    public static final String DIRECTORY_PROPERTY = "tictactoe.log";
+    public static final String DEFAULT_DIRECTORY = "game-log";
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+    public static final int RECORD_SIZE = 32;
+
+    public static final byte MOVE = 1;
+    public static final byte END = 2;
+
+    private static final int MAGIC = 0x5454544C; // "TTTL"
+    private static final int VERSION = 1;
+    private static final int CHECKED_SIZE = RECORD_SIZE - 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private boolean closed;
+
+    /**
+     * Opens the log in the given directory, creating it if needed.
+     *
+     * @param directory   the directory of the segment files
+     * @param segmentSize the size of a segment file in bytes
+     * @throws IOException if the directory or the newest segment cannot be opened
+     */
+    public GameLog(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < 2 * RECORD_SIZE || segmentSize % RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Segment size must be a multiple of " + RECORD_SIZE + ": " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            Path newest = segments.get(segments.size() - 1);
+            openSegment(indexOf(newest));
+            segment.position(validEnd(segment));
+        }
+    }
+
+    /**
+     * Opens the log in the directory given by the {@value #DIRECTORY_PROPERTY} system property
+     * (defaults to {@value #DEFAULT_DIRECTORY}).
+     *
+     * @return the log
+     * @throws IOException if the log cannot be opened
+     */
+    public static GameLog open() throws IOException {
+        return new GameLog(Path.of(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Appends a move.
+     *
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the move
+     * @param cell    the index of the cell
+     * @param symbol  the symbol (X or O) of the player
+     * @param state   the board after the move
+     */
+    public void appendMove(long matchId, int seq, int cell, char symbol, GameState state) {
+        append(MOVE, matchId, seq, cell, symbol, state);
+    }
+
+    /**
+     * Appends the end of a round.
+     *
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the last move of the round
+     * @param state   the finished board
+     */
+    public void appendEnd(long matchId, int seq, GameState state) {
+        append(END, matchId, seq, state.getMoveCount(), state.getWinner(), state);
+    }
+
+    private synchronized void append(byte type, long matchId, int seq, int cell, char symbol, GameState state) {
+        if (closed) {
+            throw new IllegalStateException("The game log is closed");
+        }
+        if (segment.remaining() < RECORD_SIZE && !rotate()) {
+            return; // losing a record of the log must not stop the game
+        }
+        record.clear();
+        record.put(type).put((byte) symbol).put((byte) state.getSize()).put((byte) state.getWinLength())
+                .putInt(seq).putLong(matchId).putLong(System.currentTimeMillis()).putInt(cell);
+        crc.reset();
+        crc.update(record.array(), 0, CHECKED_SIZE);
+        record.putInt((int) crc.getValue());
+        segment.put(record.array());
+    }
+
+    /**
+     * Continues the log in a new segment.
+     *
+     * @return true if the new segment was opened, false if it could not be created
+     */
+    private boolean rotate() {
+        try {
+            segment.force();
+            openSegment(segmentIndex + 1);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        Path path = directory.resolve(String.format("%012d%s", index, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // stays valid after the close
+        }
+        if (segment.getInt(0) == 0) {
+            segment.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, index);
+        } else if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) {
+            throw new IOException(path + " is not a game log segment");
+        }
+        segment.position(RECORD_SIZE);
+    }
+
+    /**
+     * Forces the appended records to the disk.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Forces the appended records to the disk and stops appending.
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        closed = true;
+    }
+
+    /**
+     * Reads every valid record of the log in the given directory, oldest first.
+     * Can be called while another process or thread appends to the log.
+     *
+     * @param directory the directory of the segment files
+     * @param visitor   the visitor to pass the records to
+     * @throws IOException if a segment cannot be read
+     */
+    public static void scan(Path directory, Visitor visitor) throws IOException {
+        for (Path path : segments(directory)) {
+            ByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (segment.limit() < RECORD_SIZE || segment.getInt(0) != MAGIC) {
+                continue;
+            }
+            int end = validEnd(segment);
+            for (int offset = RECORD_SIZE; offset < end; offset += RECORD_SIZE) {
+                visitor.visit(new Entry(segment.get(offset), segment.getLong(offset + 8), segment.getInt(offset + 4),
+                        segment.getInt(offset + 24), (char) segment.get(offset + 1), segment.get(offset + 2),
+                        segment.get(offset + 3), segment.getLong(offset + 16)));
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the valid records of a segment.
+     *
+     * @return the offset after the last valid record
+     */
+    private static int validEnd(ByteBuffer segment) {
+        CRC32 checksum = new CRC32();
+        byte[] bytes = new byte[CHECKED_SIZE];
+        int offset = RECORD_SIZE;
+        while (offset + RECORD_SIZE <= segment.limit() && segment.get(offset) != 0) {
+            segment.get(offset, bytes);
+            checksum.reset();
+            checksum.update(bytes);
+            if ((int) checksum.getValue() != segment.getInt(offset + CHECKED_SIZE)) {
+                break; // torn by a crash while it was written
+            }
+            offset += RECORD_SIZE;
+        }
+        return offset;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Prints the number of rounds and their results recorded in the log.
+     *
+     * @param args the directory of the log (defaults to the {@value #DIRECTORY_PROPERTY} system property)
+     * @throws IOException if the log cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+        long[] counts = new long[4]; // moves, X wins, O wins, draws
+        scan(directory, entry -> {
+            if (entry.type() == MOVE) {
+                counts[0]++;
+            } else if (entry.symbol() == GameState.X) {
+                counts[1]++;
+            } else if (entry.symbol() == GameState.O) {
+                counts[2]++;
+            } else {
+                counts[3]++;
+            }
+        });
+        System.out.println("Moves: " + counts[0]);
+        System.out.println("Rounds: " + (counts[1] + counts[2] + counts[3]));
+        System.out.println("X wins: " + counts[1] + ", O wins: " + counts[2] + ", draws: " + counts[3]);
+    }
+
+    /**
+     * One record of the log.
+     *
+     * @param type       MOVE or END
+     * @param matchId    the id of the match
+     * @param seq        the sequence number of the move, or of the last move of the round
+     * @param cell       the index of the cell, or the number of moves of the round
+     * @param symbol     the player who moved, or the winner of the round (EMPTY for a draw)
+     * @param size       the size of the board
+     * @param winLength  the number of symbols in a row needed to win
+     * @param timeMillis when the record was appended, in milliseconds since the epoch
+     */
+    public record Entry(byte type, long matchId, int seq, int cell, char symbol, int size, int winLength,
+                        long timeMillis) {
+    }
+
+    /**
+     * The Visitor interface receives the records of a scan.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Called for every record, oldest first.
+         *
+         * @param entry the record
+         */
+        void visit(Entry entry);
+    }
+}
@@ -0,0 +1,724 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The GameServer class hosts online games over TCP, replacing the polling of the moves table.
+ * One server runs any number of matches at once. Clients connect with a {@link SocketMoveChannel}, join a match
+ * and send their moves, in the binary format of {@link MoveProtocol}.
+ * The server is the authority on the state of every match. It keeps the board in memory and checks each move against
+ * it: the move must be made on the latest board (its sequence number follows the last move of the match), by the
+ * player to move, on an empty cell. A valid move is confirmed to the player who made it and pushed to the opponent.
+ * A refused move is answered with an error and a snapshot of the match, which the client uses to roll back the moves
+ * it showed ahead of the server. A player that joins gets a snapshot of the match as well.
+ * <p>
+ * Instead of joining a match by id, a client may ask for an opponent. The {@link Matchmaker} pairs it with a waiting
+ * player of similar rating, and both are joined to a new match and told their match id and symbol.
+ * <p>
+ * Clients send the name of their player when they join or queue. The {@link RatingService} of the server records the
+ * result of every finished round between two named players, and the matchmaker pairs players by the ratings it keeps,
+ * not by a rating the client claims. Anonymous players (an empty name) play unrated.
+ * <p>
+ * If the server has a {@link GameLog}, every accepted move and the end of every round are appended to it, so finished
+ * games can be replayed with {@link TicTacToeReplay}.
+ * <p>
+ * Any number of spectators may watch a match. A spectator gets a snapshot when it starts watching, every accepted move
+ * as a delta, and a fresh snapshot every {@value #SPECTATOR_SNAPSHOT_INTERVAL_MILLIS} ms. A move is encoded once and
+ * copied to every spectator. Spectators never slow down the players: their output buffer does not grow, and a
+ * spectator whose buffer is full skips the deltas until it has read everything, then gets one snapshot in their place.
+ * A spectator that lags for more than {@value #MAX_SPECTATOR_LAG_MILLIS} ms is disconnected.
+ * <p>
+ * All connections are served by a single thread with a non-blocking selector, so the server does not need a
+ * thread per client. The match state is only touched by that thread.
+ */
+public class GameServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7777;
+
+    private static final int INITIAL_OUTPUT_SIZE = 4 * MoveProtocol.MAX_FRAME_SIZE;
+    private static final int MAX_OUTPUT_SIZE = 64 * MoveProtocol.MAX_FRAME_SIZE; // more means the client stopped reading
+    private static final int ACCEPT_BACKLOG = 1024; // the default of 50 drops connections when many clients start at once
+    private static final long SWEEP_INTERVAL_MILLIS = 250;
+    private static final long SPECTATOR_SNAPSHOT_INTERVAL_MILLIS = 5000;
+    private static final long MAX_SPECTATOR_LAG_MILLIS = 10_000;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<Long, Match> matches = new HashMap<>();
+    private final Set<Match> watchedMatches = new LinkedHashSet<>();
+    private final ByteBuffer fanOut = ByteBuffer.allocate(MoveProtocol.MAX_FRAME_SIZE); // a frame for all spectators
+    private final Matchmaker<Connection> matchmaker = new Matchmaker<>(this::assign);
+    private final GameLog log;
+    private final RatingService ratings;
+    private final LongAdder connections = Metrics.counter(Metrics.SERVER_CONNECTIONS);
+    private final LongAdder accepted = Metrics.counter(Metrics.MOVES_ACCEPTED);
+    private final LongAdder refused = Metrics.counter(Metrics.MOVES_REFUSED);
+    private final LongAdder matchesMade = Metrics.counter(Metrics.MATCHES_MADE);
+    private final LongAdder spectatorsDropped = Metrics.counter(Metrics.SPECTATORS_DROPPED);
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new GameServer listening on the given port.
+     * The server does not accept clients until it is started.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * Constructs a new GameServer listening on the given port, which records its games in the given log.
+     * The server does not accept clients until it is started.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param log  the log to append the moves and finished rounds to, or null to not record them
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(int port, GameLog log) throws IOException {
+        this(port, log, new RatingService());
+    }
+
+    /**
+     * Constructs a new GameServer listening on the given port, which records its games in the given log and the
+     * ratings of its players in the given rating service.
+     * The server does not accept clients until it is started.
+     *
+     * @param port    the port to listen on, or 0 for any free port
+     * @param log     the log to append the moves and finished rounds to, or null to not record them
+     * @param ratings the ratings of the players, to record results and find opponents
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(int port, GameLog log, RatingService ratings) throws IOException {
+        this.log = log;
+        this.ratings = ratings;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts serving clients on a background thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this::run, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Serves clients on the calling thread until the server is closed.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select(SWEEP_INTERVAL_MILLIS);
+                matchmaker.sweep(); // pairs players that waited too long for someone of their rating
+                publishSnapshots();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException e) {
+                        connection.close(); // the client disconnected
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        connection.close(); // a bug triggered by this client must not stop the other matches
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        connections.increment();
+    }
+
+    /**
+     * Seats a player in a match.
+     *
+     * @return true if the player was seated, false if it was refused with an error
+     */
+    private boolean join(Connection connection, long matchId, char symbol, String player) {
+        if (connection.match != null || connection.watching != null || connection.ticket != null) {
+            connection.sendError(matchId, MoveProtocol.ERROR_ALREADY_IN_MATCH, 0);
+            return false;
+        }
+        if (symbol != GameState.X && symbol != GameState.O) {
+            connection.sendError(matchId, MoveProtocol.ERROR_MALFORMED, 0);
+            return false;
+        }
+        Match match = matches.computeIfAbsent(matchId, Match::new);
+        if (match.player(symbol) != null) {
+            connection.sendError(matchId, MoveProtocol.ERROR_SYMBOL_TAKEN, 0);
+            if (match.isEmpty()) {
+                matches.remove(matchId);
+            }
+            return false;
+        }
+        match.setPlayer(symbol, connection);
+        connection.match = match;
+        connection.symbol = symbol;
+        connection.name = player;
+        connection.sendSnapshot(match);
+        return true;
+    }
+
+    private void queue(Connection connection, String player) {
+        if (connection.match != null || connection.watching != null || connection.ticket != null) {
+            connection.sendError(0, MoveProtocol.ERROR_ALREADY_IN_MATCH, 0);
+            return;
+        }
+        connection.name = player;
+        enqueue(connection);
+    }
+
+    /**
+     * Puts a player into the matchmaker with their current rating. The matchmaker may pair it before it returns; the
+     * ticket is only kept while the player is still waiting.
+     */
+    private void enqueue(Connection connection) {
+        int rating = ratings.getRating(connection.name).rating();
+        Matchmaker.Ticket<Connection> ticket = matchmaker.enqueue(connection, rating);
+        if (ticket.isWaiting()) {
+            connection.ticket = ticket;
+        }
+    }
+
+    private void watch(Connection connection, long matchId) {
+        if (connection.match != null || connection.watching != null || connection.ticket != null) {
+            connection.sendError(matchId, MoveProtocol.ERROR_ALREADY_IN_MATCH, 0);
+            return;
+        }
+        Match match = matches.computeIfAbsent(matchId, Match::new);
+        match.spectators.add(connection);
+        connection.watching = match;
+        watchedMatches.add(match);
+        connection.sendSnapshot(match);
+    }
+
+    /**
+     * Joins two players the matchmaker paired to their new match. If one of them cannot be seated, the other one is
+     * put back into the matchmaker instead of waiting alone in the match.
+     */
+    private void assign(long matchId, Connection playerX, Connection playerO) {
+        playerX.ticket = null;
+        playerO.ticket = null;
+        if (!seat(playerX, matchId, GameState.X)) {
+            requeue(playerO);
+            return;
+        }
+        if (!seat(playerO, matchId, GameState.O)) {
+            leave(playerX);
+            requeue(playerX);
+            return;
+        }
+        matchesMade.increment();
+    }
+
+    private boolean seat(Connection player, long matchId, char symbol) {
+        if (!player.key.isValid()) {
+            return false;
+        }
+        player.sendAssign(matchId, symbol);
+        // not disconnected for reading too slowly
+        return player.key.isValid() && join(player, matchId, symbol, player.name);
+    }
+
+    private void requeue(Connection player) {
+        if (player.key.isValid()) {
+            enqueue(player);
+        }
+    }
+
+    private void move(Connection connection, long matchId, int seq, int index, char symbol) {
+        Match match = connection.match;
+        if (match == null || match.id != matchId) {
+            connection.sendError(matchId, MoveProtocol.ERROR_NOT_IN_MATCH, seq);
+            return;
+        }
+        if (seq != match.seq + 1) {
+            connection.reject(match, MoveProtocol.ERROR_OUT_OF_SEQUENCE, seq); // made on an outdated board
+            return;
+        }
+        if (symbol != connection.symbol || symbol != match.toMove) {
+            connection.reject(match, MoveProtocol.ERROR_NOT_YOUR_TURN, seq);
+            return;
+        }
+        if (index < 0 || index >= match.state.getCellCount() || !match.state.place(index, symbol)) {
+            connection.reject(match, MoveProtocol.ERROR_INVALID_CELL, seq);
+            return;
+        }
+
+        accepted.increment();
+        match.seq++;
+        match.toMove = GameState.opponent(symbol);
+        connection.sendMove(match.id, match.seq, index, symbol); // confirms the move to the player who made it
+        Connection opponent = match.player(match.toMove);
+        if (opponent != null) {
+            opponent.sendMove(match.id, match.seq, index, symbol);
+        }
+        if (!match.spectators.isEmpty()) {
+            fanOut.clear();
+            int start = MoveProtocol.beginFrame(fanOut);
+            MoveProtocol.putMove(fanOut, match.id, match.seq, index, symbol);
+            MoveProtocol.endFrame(fanOut, start);
+            fanOut.flip();
+            publish(match);
+        }
+        if (log != null) {
+            log.appendMove(match.id, match.seq, index, symbol, match.state);
+        }
+        if (match.state.isOver()) {
+            if (log != null) {
+                log.appendEnd(match.id, match.seq, match.state);
+            }
+            recordResult(match);
+            match.state.reset(); // the loser of the round, or the player who did not finish it, starts the next one
+        }
+    }
+
+    /**
+     * Records the result of a finished round in the ratings, if both players are named and still connected.
+     */
+    private void recordResult(Match match) {
+        if (match.playerX == null || match.playerO == null) {
+            return; // the opponent left during the round
+        }
+        String playerX = match.playerX.name;
+        String playerO = match.playerO.name;
+        if (playerX.isEmpty() || playerO.isEmpty() || playerX.equals(playerO)) {
+            return; // unrated, or one person playing both sides
+        }
+        ratings.recordGame(playerX, playerO, match.state.getWinner());
+    }
+
+    /**
+     * Copies the frame in the fan-out buffer to every spectator of the match. Spectators that lag behind skip it.
+     */
+    private void publish(Match match) {
+        for (int i = match.spectators.size() - 1; i >= 0; i--) { // backwards, as a failed write removes the spectator
+            match.spectators.get(i).sendShared(fanOut);
+        }
+    }
+
+    /**
+     * Sends the periodic snapshots to the spectators, and disconnects the spectators that lagged for too long.
+     */
+    private void publishSnapshots() {
+        long now = System.nanoTime();
+        for (Iterator<Match> watched = watchedMatches.iterator(); watched.hasNext(); ) {
+            Match match = watched.next();
+            if (match.spectators.isEmpty()) {
+                watched.remove();
+                continue;
+            }
+            for (int i = match.spectators.size() - 1; i >= 0; i--) {
+                Connection spectator = match.spectators.get(i);
+                if (spectator.lagging && now - spectator.laggingSince > MAX_SPECTATOR_LAG_MILLIS * 1_000_000) {
+                    spectatorsDropped.increment();
+                    spectator.close();
+                }
+            }
+            if (now - match.lastSnapshotNanos < SPECTATOR_SNAPSHOT_INTERVAL_MILLIS * 1_000_000) {
+                continue;
+            }
+            match.lastSnapshotNanos = now;
+            fanOut.clear();
+            int start = MoveProtocol.beginFrame(fanOut);
+            MoveProtocol.putSnapshot(fanOut, match.id, match.seq, match.toMove, match.state);
+            MoveProtocol.endFrame(fanOut, start);
+            fanOut.flip();
+            publish(match);
+        }
+    }
+
+    private void leave(Connection connection) {
+        if (connection.ticket != null) {
+            matchmaker.cancel(connection.ticket);
+            connection.ticket = null;
+        }
+        Match match = connection.match;
+        if (match != null) {
+            match.setPlayer(connection.symbol, null);
+            connection.match = null;
+        } else if ((match = connection.watching) != null) {
+            match.spectators.remove(connection);
+            connection.watching = null;
+        } else {
+            return;
+        }
+        if (match.isEmpty()) {
+            matches.remove(match.id);
+        }
+    }
+
+    /**
+     * returns the number of matches with at least one connected player or spectator.
+     * Only accurate when called on the server thread or while the server is idle.
+     */
+    public int getMatchCount() {
+        return matches.size();
+    }
+
+    /**
+     * returns the number of players waiting for an opponent.
+     */
+    public int getWaitingCount() {
+        return matchmaker.getWaitingCount();
+    }
+
+    /**
+     * returns the ratings of the players of this server, for example to show their ranks.
+     */
+    public RatingService getRatings() {
+        return ratings;
+    }
+
+    /**
+     * returns the port the server is listening on.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server and disconnects all connected clients.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection) {
+                connection.close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts a game server and keeps it running until the process is stopped.
+     * The ratings are kept in the database if it can be reached, and only in memory otherwise.
+     *
+     * @param args the port to listen on (defaults to {@value #DEFAULT_PORT})
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RatingService ratings = openRatings();
+        Runtime.getRuntime().addShutdownHook(new Thread(ratings::close, "rating-save"));
+        GameServer server = new GameServer(port, GameLog.open(), ratings);
+        System.out.println("Game server listening on port " + server.getPort());
+        server.run();
+    }
+
+    /**
+     * Opens the rating service backed by the {@link RatingStore}, or an in-memory one if the database is unavailable.
+     *
+     * @return the rating service
+     */
+    private static RatingService openRatings() {
+        try {
+            return new RatingService(RatingStore.getInstance());
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+            System.out.println("Ratings are kept in memory only");
+            return new RatingService();
+        }
+    }
+
+    /**
+     * The Match class is the state of one match: the board, the number of moves, the player to move, the two
+     * players and the spectators.
+     */
+    private static final class Match {
+
+        private final long id;
+        private final GameState state = new GameState();
+        private int seq; // the sequence number of the last move, counted over all rounds
+        private char toMove = GameState.X;
+        private Connection playerX;
+        private Connection playerO;
+        private final List<Connection> spectators = new ArrayList<>();
+        private long lastSnapshotNanos = System.nanoTime(); // spectators get a snapshot when they start watching
+
+        private Match(long id) {
+            this.id = id;
+        }
+
+        private Connection player(char symbol) {
+            return symbol == GameState.X ? playerX : playerO;
+        }
+
+        private void setPlayer(char symbol, Connection connection) {
+            if (symbol == GameState.X) {
+                playerX = connection;
+            } else {
+                playerO = connection;
+            }
+        }
+
+        private boolean isEmpty() {
+            return playerX == null && playerO == null && spectators.isEmpty();
+        }
+    }
+
+    /**
+     * The Connection class is the connection to one client, with its read buffer and its buffer of unsent data.
+     * Messages are encoded straight into the output buffer. If the client reads too slowly and the buffer would
+     * have to grow past {@value #MAX_OUTPUT_SIZE} bytes, the client is disconnected. The buffer of a spectator does
+     * not grow; while it is full, the spectator is lagging and skips messages until it gets a snapshot.
+     */
+    private final class Connection implements MoveProtocol.Handler {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(MoveProtocol.MAX_FRAME_SIZE);
+        private ByteBuffer out = ByteBuffer.allocate(INITIAL_OUTPUT_SIZE);
+        private Match match;
+        private char symbol;
+        private Matchmaker.Ticket<Connection> ticket; // while waiting for an opponent
+        private String name = ""; // the name of the player, empty if anonymous
+        private Match watching; // while watching a match as a spectator
+        private boolean lagging;
+        private long laggingSince;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Reads what the client sent and handles every complete frame.
+         * Stops at the first message after the connection was closed, for example because an answer did not fit
+         * into the output buffer, so a closed connection never takes a seat in a match.
+         */
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            try {
+                MoveProtocol.decode(in, this);
+            } catch (ProtocolException e) {
+                close();
+                return;
+            }
+            in.compact();
+        }
+
+        @Override
+        public void onJoin(long matchId, char symbol, String player) throws ProtocolException {
+            checkOpen();
+            join(this, matchId, symbol, player);
+        }
+
+        @Override
+        public void onMove(long matchId, int seq, int cell, char symbol) throws ProtocolException {
+            checkOpen();
+            move(this, matchId, seq, cell, symbol);
+        }
+
+        @Override
+        public void onQueue(String player) throws ProtocolException {
+            checkOpen();
+            queue(this, player);
+        }
+
+        @Override
+        public void onWatch(long matchId) throws ProtocolException {
+            checkOpen();
+            watch(this, matchId);
+        }
+
+        private void checkOpen() throws ProtocolException {
+            if (!key.isValid()) {
+                throw new ProtocolException("The connection was closed"); // ends the decoding
+            }
+        }
+
+        @Override
+        public void onSnapshot(long matchId, int seq, char toMove, GameState state) throws ProtocolException {
+            throw new ProtocolException("Only the server sends snapshots"); // closes the connection
+        }
+
+        private void sendMove(long matchId, int seq, int cell, char symbol) {
+            if (reserveFrame()) {
+                int start = MoveProtocol.beginFrame(out);
+                MoveProtocol.putMove(out, matchId, seq, cell, symbol);
+                MoveProtocol.endFrame(out, start);
+                send();
+            }
+        }
+
+        private void sendAssign(long matchId, char symbol) {
+            if (reserveFrame()) {
+                int start = MoveProtocol.beginFrame(out);
+                MoveProtocol.putAssign(out, matchId, symbol);
+                MoveProtocol.endFrame(out, start);
+                send();
+            }
+        }
+
+        private void sendSnapshot(Match match) {
+            if (reserveFrame()) {
+                int start = MoveProtocol.beginFrame(out);
+                MoveProtocol.putSnapshot(out, match.id, match.seq, match.toMove, match.state);
+                MoveProtocol.endFrame(out, start);
+                send();
+            }
+        }
+
+        /**
+         * Sends a frame that is shared by all spectators of a match, unless this spectator lags behind.
+         *
+         * @param frame the encoded frame, which is left unchanged
+         */
+        private void sendShared(ByteBuffer frame) {
+            if (lagging || !key.isValid()) {
+                return;
+            }
+            if (out.remaining() < frame.remaining()) {
+                startLagging();
+                return;
+            }
+            out.put(frame.duplicate());
+            send();
+        }
+
+        private void startLagging() {
+            lagging = true;
+            laggingSince = System.nanoTime();
+        }
+
+        /**
+         * Refuses a move, and sends the state of the match so the client can roll back.
+         */
+        private void reject(Match match, byte code, int seq) {
+            refused.increment();
+            if (reserveFrame()) {
+                int start = MoveProtocol.beginFrame(out);
+                MoveProtocol.putError(out, match.id, code, seq);
+                MoveProtocol.putSnapshot(out, match.id, match.seq, match.toMove, match.state);
+                MoveProtocol.endFrame(out, start);
+                send();
+            }
+        }
+
+        private void sendError(long matchId, byte code, int seq) {
+            if (reserveFrame()) {
+                int start = MoveProtocol.beginFrame(out);
+                MoveProtocol.putError(out, matchId, code, seq);
+                MoveProtocol.endFrame(out, start);
+                send();
+            }
+        }
+
+        /**
+         * Makes room for one more frame in the output buffer.
+         *
+         * @return true if there is room, false if the client was disconnected because it reads too slowly
+         */
+        private boolean reserveFrame() {
+            if (!key.isValid()) {
+                return false;
+            }
+            if (out.remaining() >= MoveProtocol.MAX_FRAME_SIZE) {
+                return true;
+            }
+            if (watching != null) {
+                startLagging(); // the message is replaced by a snapshot once the spectator caught up
+                return false;
+            }
+            if (out.capacity() * 2 > MAX_OUTPUT_SIZE) {
+                close();
+                return false;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(out.capacity() * 2);
+            out.flip();
+            larger.put(out);
+            out = larger;
+            return true;
+        }
+
+        private void send() {
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Writes as much of the output buffer as the socket takes. The rest is written when it becomes writable.
+         * A lagging spectator that has read everything gets a snapshot in place of the messages it skipped.
+         */
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            if (lagging && out.position() == 0) {
+                lagging = false;
+                sendSnapshot(watching);
+            }
+        }
+
+        private void close() {
+            leave(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/**
+ * The GameState class is the headless model of a Tic-Tac-Toe board.
+ * The board is a square of configurable size, and a player wins by getting a configurable number of symbols
+ * in a row (horizontally, vertically or diagonally). The default is the classic 3x3 board with 3 in a row.
+ * Each player's symbols are stored in a bitboard, where bit i represents cell i
+ * (cells are numbered row by row, starting at the top left corner).
+ * Win detection is incremental: placing a symbol only checks the lines through that cell.
+ * The classic board additionally exposes its bitboards as 9-bit ints with precomputed win masks,
+ * which the AI search and the opening book work on directly.
+ * A GameState instance is not thread-safe; every game or search thread should own its own instance.
+ */
+public class GameState {
+
+    public static final int CLASSIC_SIZE = 3;
+    public static final int CELL_COUNT = CLASSIC_SIZE * CLASSIC_SIZE; // cells of the classic board
+    public static final int FULL_BOARD = (1 << CELL_COUNT) - 1; // bitboard of the full classic board
+
+    public static final char X = 'X';
+    public static final char O = 'O';
+    public static final char EMPTY = ' ';
+
+    /**
+     * The 8 winning lines of the classic board (3 rows, 3 columns and 2 diagonals) as bitmasks.
+     */
+    public static final int[] WIN_MASKS = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000, // rows
+            0b001_001_001, 0b010_010_010, 0b100_100_100, // columns
+            0b100_010_001, 0b001_010_100                 // diagonals
+    };
+
+    /**
+     * The row and column steps of the 4 line directions: horizontal, vertical, diagonal and anti-diagonal.
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int size;
+    private final int winLength;
+    private final int cellCount;
+
+    private final long[] xBoard;
+    private final long[] oBoard;
+    private int moveCount;
+    private char winner = EMPTY;
+    private int winningMove = -1; // the cell whose placement made the winner win
+    private long hash;
+
+    /**
+     * Constructs a new, empty GameState of the classic 3x3 board.
+     */
+    public GameState() {
+        this(CLASSIC_SIZE, CLASSIC_SIZE);
+    }
+
+    /**
+     * Constructs a new, empty GameState.
+     *
+     * @param size      the number of rows and columns of the board
+     * @param winLength the number of symbols in a row needed to win
+     * @throws IllegalArgumentException if the win length does not fit on the board
+     */
+    public GameState(int size, int winLength) {
+        if (size < 1 || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Invalid board: size " + size + ", win length " + winLength);
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.cellCount = size * size;
+        this.xBoard = new long[(cellCount + 63) >>> 6];
+        this.oBoard = new long[xBoard.length];
+    }
+
+    /**
+     * Constructs a copy of the given GameState.
+     *
+     * @param other the GameState to copy
+     */
+    public GameState(GameState other) {
+        this.size = other.size;
+        this.winLength = other.winLength;
+        this.cellCount = other.cellCount;
+        this.xBoard = other.xBoard.clone();
+        this.oBoard = other.oBoard.clone();
+        this.moveCount = other.moveCount;
+        this.winner = other.winner;
+        this.winningMove = other.winningMove;
+        this.hash = other.hash;
+    }
+
+    /**
+     * Creates a GameState of the classic 3x3 board from the given bitboards.
+     *
+     * @param xBoard the bitboard of the cells occupied by X
+     * @param oBoard the bitboard of the cells occupied by O
+     * @return the new GameState
+     * @throws IllegalArgumentException if the bitboards overlap or do not fit on the board
+     */
+    public static GameState fromBitboards(int xBoard, int oBoard) {
+        if ((xBoard & oBoard) != 0 || ((xBoard | oBoard) & ~FULL_BOARD) != 0) {
+            throw new IllegalArgumentException("Invalid bitboards: " + xBoard + ", " + oBoard);
+        }
+        GameState state = new GameState();
+        state.xBoard[0] = xBoard;
+        state.oBoard[0] = oBoard;
+        state.moveCount = Integer.bitCount(xBoard | oBoard);
+        state.winner = isWin(xBoard) ? X : isWin(oBoard) ? O : EMPTY;
+        for (int i = 0; i < CELL_COUNT; i++) {
+            if (!state.isEmpty(i)) {
+                state.hash ^= zobrist(i, state.getSymbol(i));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Places the given symbol on the given cell.
+     * If this completes a line, the symbol becomes the winner.
+     *
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) to place
+     * @return true if the symbol was placed, false if the cell is already occupied
+     */
+    public boolean place(int index, char symbol) {
+        checkIndex(index);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if (((xBoard[word] | oBoard[word]) & bit) != 0) {
+            return false;
+        }
+
+        if (symbol == X) xBoard[word] |= bit;
+        else if (symbol == O) oBoard[word] |= bit;
+        else throw new IllegalArgumentException("Unknown symbol: " + symbol);
+
+        moveCount++;
+        hash ^= zobrist(index, symbol);
+        if (winner == EMPTY && isWinningMove(index)) {
+            winner = symbol;
+            winningMove = index;
+        }
+        return true;
+    }
+
+    /**
+     * Removes whatever symbol is on the given cell.
+     *
+     * @param index the index of the cell
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        if (isEmpty(index)) {
+            return;
+        }
+
+        char symbol = getSymbol(index);
+        int word = index >>> 6;
+        long mask = ~(1L << index);
+        xBoard[word] &= mask;
+        oBoard[word] &= mask;
+        moveCount--;
+        hash ^= zobrist(index, symbol);
+
+        if (index == winningMove) {
+            // Taking back the winning move (as the AI search does) restores the board before the win
+            winner = EMPTY;
+            winningMove = -1;
+        } else if (winner == symbol) {
+            winner = findWinner();
+            winningMove = -1;
+        }
+    }
+
+    /**
+     * Clears the whole board.
+     */
+    public void reset() {
+        for (int i = 0; i < xBoard.length; i++) {
+            xBoard[i] = 0;
+            oBoard[i] = 0;
+        }
+        moveCount = 0;
+        winner = EMPTY;
+        winningMove = -1;
+        hash = 0;
+    }
+
+    /**
+     * Checks if the given cell is empty.
+     *
+     * @param index the index of the cell
+     * @return true if the cell is empty, false otherwise
+     */
+    public boolean isEmpty(int index) {
+        checkIndex(index);
+        return (((xBoard[index >>> 6] | oBoard[index >>> 6]) >>> index) & 1) == 0;
+    }
+
+    /**
+     * Returns the symbol on the given cell.
+     *
+     * @param index the index of the cell
+     * @return X, O or EMPTY
+     */
+    public char getSymbol(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        if (((xBoard[word] >>> index) & 1) != 0) return X;
+        if (((oBoard[word] >>> index) & 1) != 0) return O;
+        return EMPTY;
+    }
+
+    /**
+     * Checks if the symbol on the given cell is part of a complete line.
+     * Only the lines through the cell are checked.
+     *
+     * @param index the index of the cell
+     * @return true if the cell completes a line, false otherwise (or if the cell is empty)
+     */
+    public boolean isWinningMove(int index) {
+        char symbol = getSymbol(index);
+        if (symbol == EMPTY) {
+            return false;
+        }
+
+        int row = index / size;
+        int column = index % size;
+        for (int[] direction : DIRECTIONS) {
+            int count = 1 + countInDirection(row, column, direction[0], direction[1], symbol)
+                    + countInDirection(row, column, -direction[0], -direction[1], symbol);
+            if (count >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the symbols in a row next to the given cell in one direction, not counting the cell itself.
+     */
+    private int countInDirection(int row, int column, int rowStep, int columnStep, char symbol) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = column + columnStep;
+        while (count < winLength && r >= 0 && r < size && c >= 0 && c < size && getSymbol(r * size + c) == symbol) {
+            count++;
+            r += rowStep;
+            c += columnStep;
+        }
+        return count;
+    }
+
+    /**
+     * Scans the whole board for a complete line.
+     */
+    private char findWinner() {
+        for (int i = 0; i < cellCount; i++) {
+            if (isWinningMove(i)) {
+                return getSymbol(i);
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Checks if the given symbol has won the game.
+     *
+     * @param symbol the symbol (X or O) to check
+     * @return true if the symbol has won, false otherwise
+     */
+    public boolean hasWon(char symbol) {
+        return winner == symbol;
+    }
+
+    /**
+     * Returns the winning symbol, if any.
+     *
+     * @return X or O if that player has won, EMPTY otherwise
+     */
+    public char getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks if every cell of the board is occupied.
+     *
+     * @return true if the board is full, false otherwise
+     */
+    public boolean isFull() {
+        return moveCount == cellCount;
+    }
+
+    /**
+     * Checks if the round is over, either because a player has won or because the board is full.
+     *
+     * @return true if the round is over, false otherwise
+     */
+    public boolean isOver() {
+        return winner != EMPTY || isFull();
+    }
+
+    /**
+     * Counts the cells of the given symbol that are inside a mask.
+     * The mask consists of {@link #getWordCount()} longs, starting at the given offset of the array,
+     * so many masks can be packed into one array.
+     *
+     * @param symbol the symbol (X or O) to count
+     * @param masks  the array holding the mask
+     * @param offset the index of the first word of the mask
+     * @return the number of cells of the symbol inside the mask
+     */
+    public int count(char symbol, long[] masks, int offset) {
+        long[] board = symbol == X ? xBoard : oBoard;
+        int count = 0;
+        for (int word = 0; word < board.length; word++) {
+            count += Long.bitCount(board[word] & masks[offset + word]);
+        }
+        return count;
+    }
+
+    /**
+     * Collects the empty cells that are next to an occupied cell (horizontally, vertically or diagonally).
+     * On an empty board, the only candidate is the center cell.
+     * Moves far away from all symbols are almost never useful, so searches only consider these candidates.
+     *
+     * @param moves the array to write the candidate cells to, at least getCellCount() long
+     * @return the number of candidate cells written
+     */
+    public int collectCandidateMoves(int[] moves) {
+        if (moveCount == 0) {
+            moves[0] = (size / 2) * size + size / 2;
+            return 1;
+        }
+
+        int count = 0;
+        for (int index = 0; index < cellCount; index++) {
+            if (!isEmpty(index)) {
+                continue;
+            }
+            int row = index / size;
+            int column = index % size;
+            search:
+            for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(size - 1, column + 1); c++) {
+                    if (!isEmpty(r * size + c)) {
+                        moves[count++] = index;
+                        break search;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if this is the classic 3x3 board with 3 in a row.
+     *
+     * @return true for the classic board, false otherwise
+     */
+    public boolean isClassic() {
+        return size == CLASSIC_SIZE && winLength == CLASSIC_SIZE;
+    }
+
+    /**
+     * Returns the bitboard of the given symbol on the classic board.
+     *
+     * @param symbol the symbol (X or O)
+     * @return the bitboard of the cells occupied by the symbol
+     * @throws IllegalStateException if this is not the classic board
+     */
+    public int getBoard(char symbol) {
+        if (!isClassic()) {
+            throw new IllegalStateException("Int bitboards are only available on the classic board");
+        }
+        if (symbol == X) return (int) xBoard[0];
+        if (symbol == O) return (int) oBoard[0];
+        throw new IllegalArgumentException("Unknown symbol: " + symbol);
+    }
+
+    /**
+     * returns the number of rows and columns of the board.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * returns the number of symbols in a row needed to win.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * returns the number of cells of the board.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * returns the number of occupied cells.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * returns the number of longs each bitboard is stored in.
+     */
+    public int getWordCount() {
+        return xBoard.length;
+    }
+
+    /**
+     * returns the Zobrist hash of the position, which is updated incrementally on every move.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Checks if the given bitboard of the classic board contains a complete winning line.
+     *
+     * @param board the bitboard to check
+     * @return true if the bitboard contains a winning line, false otherwise
+     */
+    public static boolean isWin(int board) {
+        for (int mask : WIN_MASKS) {
+            if ((board & mask) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the symbol of the opponent of the given symbol.
+     *
+     * @param symbol the symbol (X or O)
+     * @return O for X and X for O
+     */
+    public static char opponent(char symbol) {
+        return symbol == X ? O : X;
+    }
+
+    /**
+     * Returns the Zobrist key of a symbol on a cell.
+     * The keys are derived from the cell and symbol with the SplitMix64 finalizer, so no key table is needed
+     * for any board size.
+     */
+    private static long zobrist(int index, char symbol) {
+        long z = ((long) index << 1 | (symbol == X ? 0 : 1)) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= cellCount) {
+            throw new IndexOutOfBoundsException("Cell index out of range: " + index);
+        }
+    }
+}
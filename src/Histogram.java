@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Histogram class records durations with a fixed relative precision, like an HDR histogram.
+ * Values below 128 have their own bucket; larger values share a bucket with the values that agree in their
+ * seven highest bits, so every recorded value is off by less than 1.6%, from nanoseconds to centuries.
+ * Recording is a few bit operations and an atomic increment of the bucket, without locks or allocation, so it can
+ * be used on every move; the count is summed up from the buckets when it is read.
+ * The class is thread-safe; a snapshot taken while values are recorded may miss the newest ones.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_COUNT + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, for example a duration in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        long previous;
+        while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+            // another thread recorded a new maximum, compare again
+        }
+    }
+
+    /**
+     * Records the time since the given start.
+     *
+     * @param startNanos the start, from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values lie.
+     *
+     * @param percent the percentage, from 0 to 100
+     * @return the highest value of the bucket holding that percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percent) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * returns the number of recorded values.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            total += counts.get(index);
+        }
+        return total;
+    }
+
+    /**
+     * returns the sum of the recorded values.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * returns the largest recorded value.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * returns the average of the recorded values, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long total = getCount();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    private static int indexOf(long value) {
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return shift * HALF_COUNT + (int) (value >>> shift); // value >>> shift has its highest of 7 bits set
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_COUNT - 1;
+        long subBucket = index - (long) shift * HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
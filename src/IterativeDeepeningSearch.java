@@ -0,0 +1,503 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The IterativeDeepeningSearch class finds moves on boards that are too large to search to the end of the game.
+ * It runs a negamax search with alpha-beta pruning to depth 1, 2, 3, ... until its time budget is used up,
+ * and returns the best move of the deepest search that completed (the principal variation move).
+ * Positions below the search horizon are scored by a heuristic that counts the open lines of each player:
+ * every window of win-length cells that holds symbols of only one player is worth more the fuller it is.
+ * Only empty cells next to an occupied cell are searched, which keeps the branching factor small.
+ * <p>
+ * In parallel mode, every iteration searches the principal variation move first and then fans the remaining
+ * root moves out over a ForkJoinPool. All threads share one lock-free transposition table and the best score found
+ * so far, which they use as the lower bound of their search window.
+ * A search instance can be reused for many moves and positions, but must not run two searches at once.
+ */
+public class IterativeDeepeningSearch {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50;
+
+    /**
+     * The score of a won position. Faster wins score slightly higher than slower ones.
+     */
+    static final int WIN_SCORE = 1_000_000;
+
+    private static final int MAX_DEPTH = 64;
+    private static final int TABLE_CAPACITY = 1 << 18;
+    private static final int TIME_CHECK_INTERVAL = 256; // nodes between two clock reads
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final long timeBudgetNanos;
+    private final ForkJoinPool pool; // null for a sequential search
+    private final TranspositionTable table = new TranspositionTable(TABLE_CAPACITY);
+    private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final LongAdder nodes = new LongAdder();
+
+    // Read-only while a search is running
+    private int size;
+    private int winLength;
+    private long[] windowMasks; // win-length windows of the current board size, getWordCount() longs each
+    private int windowCount;
+    private int[] windowWeights; // windowWeights[n] is the value of an open window with n symbols
+    private long deadline;
+    private BooleanSupplier cancellation;
+
+    private volatile boolean aborted;
+    private int completedDepth;
+
+    /**
+     * Constructs a new sequential IterativeDeepeningSearch with the default time budget.
+     */
+    public IterativeDeepeningSearch() {
+        this(DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructs a new sequential IterativeDeepeningSearch with the given time budget per move.
+     *
+     * @param timeBudgetMillis the time the search may take per move, in milliseconds
+     */
+    public IterativeDeepeningSearch(long timeBudgetMillis) {
+        this(timeBudgetMillis, null);
+    }
+
+    /**
+     * Constructs a new IterativeDeepeningSearch with the given time budget per move,
+     * which searches root moves in parallel on the given pool.
+     *
+     * @param timeBudgetMillis the time the search may take per move, in milliseconds
+     * @param pool             the pool to search on, or null to search on the calling thread only
+     */
+    public IterativeDeepeningSearch(long timeBudgetMillis, ForkJoinPool pool) {
+        if (timeBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Time budget must be positive: " + timeBudgetMillis);
+        }
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the best move for the given player within the time budget.
+     * The given state is not modified.
+     *
+     * @param position the position to search
+     * @param symbol   the symbol (X or O) of the player to move
+     * @return the index of the best move
+     * @throws IllegalStateException if the game is already over
+     */
+    public int findBestMove(GameState position, char symbol) {
+        return findBestMove(position, symbol, () -> false);
+    }
+
+    /**
+     * Finds the best move for the given player within the time budget, or until the search is cancelled.
+     * A cancelled search returns the best move of the last complete iteration.
+     * The given state is not modified.
+     *
+     * @param position     the position to search
+     * @param symbol       the symbol (X or O) of the player to move
+     * @param cancellation polled by the search threads together with the clock; returns true to stop the search
+     * @return the index of the best move
+     * @throws IllegalStateException if the game is already over
+     */
+    public int findBestMove(GameState position, char symbol, BooleanSupplier cancellation) {
+        if (position.isOver()) {
+            throw new IllegalStateException("No valid move found.");
+        }
+        this.cancellation = cancellation;
+        deadline = System.nanoTime() + timeBudgetNanos;
+        prepare(position);
+        nodes.reset();
+        aborted = false;
+        completedDepth = 0;
+
+        Worker worker = borrowWorker(position);
+        try {
+            worker.load(position);
+            int[] rootMoves = Arrays.copyOf(worker.moveBuffer(0), worker.generateMoves(0, symbol));
+            int[] scores = new int[rootMoves.length];
+            int bestMove = rootMoves[0];
+
+            int maxDepth = Math.min(MAX_DEPTH - 1, position.getCellCount() - position.getMoveCount());
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                if (pool == null) {
+                    searchSequential(worker, position, rootMoves, symbol, depth, scores);
+                } else {
+                    searchParallel(worker, position, rootMoves, symbol, depth, scores);
+                }
+                if (aborted) {
+                    break; // keep the move of the last complete iteration
+                }
+
+                int best = 0;
+                for (int i = 1; i < rootMoves.length; i++) {
+                    if (scores[i] > scores[best]) {
+                        best = i;
+                    }
+                }
+                bestMove = rootMoves[best];
+                completedDepth = depth;
+                // Search the principal variation move first in the next iteration
+                System.arraycopy(rootMoves, 0, rootMoves, 1, best);
+                rootMoves[0] = bestMove;
+
+                if (Math.abs(scores[best]) >= WIN_SCORE - MAX_DEPTH) {
+                    break; // the game is decided, searching deeper will not change the move
+                }
+            }
+            return bestMove;
+        } finally {
+            idleWorkers.offer(worker);
+        }
+    }
+
+    /**
+     * Searches all root moves one after the other on the calling thread.
+     */
+    private void searchSequential(Worker worker, GameState position, int[] rootMoves, char symbol, int depth,
+                                  int[] scores) {
+        int alpha = -WIN_SCORE - 1;
+        for (int i = 0; i < rootMoves.length && !aborted; i++) {
+            scores[i] = worker.searchRootMove(position, rootMoves[i], symbol, depth, alpha);
+            alpha = Math.max(alpha, scores[i]);
+        }
+    }
+
+    /**
+     * Searches the first root move on the calling thread, then all other root moves in parallel on the pool.
+     * A move that cannot beat the best score known when its task starts fails low. Its score is only a bound, and
+     * the move that set that score may come later in the list, so the move gets the lowest score instead of tying.
+     */
+    private void searchParallel(Worker worker, GameState position, int[] rootMoves, char symbol, int depth,
+                                int[] scores) {
+        scores[0] = worker.searchRootMove(position, rootMoves[0], symbol, depth, -WIN_SCORE - 1);
+        AtomicInteger alpha = new AtomicInteger(scores[0]);
+
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>(rootMoves.length);
+        for (int i = 1; i < rootMoves.length; i++) {
+            int move = rootMoves[i];
+            tasks.add(pool.submit(() -> {
+                Worker taskWorker = borrowWorker(position);
+                try {
+                    int bound = alpha.get();
+                    int score = taskWorker.searchRootMove(position, move, symbol, depth, bound);
+                    if (score <= bound) {
+                        return -WIN_SCORE - 1; // failed low, not better than the move that set the bound
+                    }
+                    alpha.accumulateAndGet(score, Math::max);
+                    return score;
+                } finally {
+                    idleWorkers.offer(taskWorker);
+                }
+            }));
+        }
+        for (int i = 1; i < rootMoves.length; i++) {
+            scores[i] = tasks.get(i - 1).join();
+        }
+    }
+
+    /**
+     * Rebuilds the window masks when the board dimensions change.
+     */
+    private void prepare(GameState position) {
+        if (windowMasks != null && size == position.getSize() && winLength == position.getWinLength()) {
+            return;
+        }
+        size = position.getSize();
+        winLength = position.getWinLength();
+        int words = position.getWordCount();
+
+        long[] masks = new long[DIRECTIONS.length * size * size * words];
+        int count = 0;
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    int endRow = row + direction[0] * (winLength - 1);
+                    int endColumn = column + direction[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endColumn < 0 || endColumn >= size) {
+                        continue;
+                    }
+                    for (int k = 0; k < winLength; k++) {
+                        int cell = (row + direction[0] * k) * size + column + direction[1] * k;
+                        masks[count * words + (cell >>> 6)] |= 1L << cell;
+                    }
+                    count++;
+                }
+            }
+        }
+        windowMasks = masks;
+        windowCount = count;
+
+        windowWeights = new int[winLength + 1];
+        for (int n = 1; n < winLength; n++) {
+            windowWeights[n] = windowWeights[n - 1] == 0 ? 1 : windowWeights[n - 1] * 10;
+        }
+        windowWeights[winLength] = WIN_SCORE / 2; // a complete line is caught as a win before evaluation
+
+        idleWorkers.clear();
+        table.clear();
+    }
+
+    /**
+     * Takes an idle worker for the board size of the given position, or creates a new one.
+     */
+    private Worker borrowWorker(GameState position) {
+        Worker worker = idleWorkers.poll();
+        if (worker == null || worker.cellCount != position.getCellCount()) {
+            worker = new Worker(position.getCellCount());
+        }
+        return worker;
+    }
+
+    /**
+     * returns the depth of the deepest search that completed during the last call to findBestMove.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * returns the number of nodes visited during the last call to findBestMove.
+     */
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    /**
+     * returns the transposition table shared by all search threads.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * The Worker class holds the state of one search thread: a copy of the position and the move buffers.
+     * Idle workers are kept by the search and reused, so buffers are only allocated when the board size changes.
+     */
+    private final class Worker {
+
+        private final int cellCount;
+        private final int[][] moveBuffers = new int[MAX_DEPTH + 1][]; // candidate moves per ply, allocated on demand
+        private final int[][] orderBuffers = new int[MAX_DEPTH + 1][]; // ordering keys per ply
+        private GameState state;
+        private long nodeCount;
+
+        private Worker(int cellCount) {
+            this.cellCount = cellCount;
+        }
+
+        /**
+         * Loads a copy of the given position.
+         */
+        private void load(GameState position) {
+            state = new GameState(position);
+        }
+
+        /**
+         * Plays one root move on a copy of the position and searches the resulting position.
+         *
+         * @return the score of the move for the player to move at the root
+         */
+        private int searchRootMove(GameState position, int move, char symbol, int depth, int alpha) {
+            load(position);
+            state.place(move, symbol);
+            nodeCount = 0;
+            int score = -negamax(depth - 1, 1, -WIN_SCORE - 1, -alpha, GameState.opponent(symbol));
+            nodes.add(nodeCount);
+            return score;
+        }
+
+        /**
+         * Applies negamax with alpha-beta pruning up to the given depth.
+         *
+         * @param depth  the remaining depth
+         * @param ply    the distance from the root
+         * @param alpha  the lower bound of the search window
+         * @param beta   the upper bound of the search window
+         * @param symbol the symbol of the player to move
+         * @return the score of the position for the player to move
+         */
+        private int negamax(int depth, int ply, int alpha, int beta, char symbol) {
+            if (state.getWinner() != GameState.EMPTY) {
+                return -(WIN_SCORE - ply); // the previous move won
+            }
+            if (state.isFull()) {
+                return 0;
+            }
+            if (++nodeCount % TIME_CHECK_INTERVAL == 0
+                    && (System.nanoTime() > deadline || cancellation.getAsBoolean())) {
+                aborted = true;
+            }
+            if (aborted) {
+                return 0;
+            }
+            if (depth == 0) {
+                return evaluate(symbol);
+            }
+
+            long key = state.getHash() ^ (symbol == GameState.X ? 0 : 0x5DEECE66DL);
+            int entry = table.probe(key);
+            if (entry != TranspositionTable.MISSING && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+
+            int originalAlpha = alpha;
+            int moveCount = generateMoves(ply, symbol);
+            int[] moves = moveBuffers[ply];
+            char opponent = GameState.opponent(symbol);
+
+            for (int i = 0; i < moveCount; i++) {
+                state.place(moves[i], symbol);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha, opponent);
+                state.remove(moves[i]);
+                if (aborted) {
+                    return 0;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            int bound = alpha <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                    : alpha >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(key, TranspositionTable.pack(toTable(alpha, ply), bound, depth));
+            return alpha;
+        }
+
+        /**
+         * Converts a score found at the given ply into one relative to the position, so that a mate score stored in
+         * the transposition table counts the moves to the end of the game from the position rather than from the
+         * root it was searched from.
+         *
+         * @param score the score relative to the root
+         * @param ply   the number of moves from the root
+         * @return the score to store
+         */
+        private int toTable(int score, int ply) {
+            if (score >= WIN_SCORE - MAX_DEPTH) {
+                return score + ply;
+            }
+            if (score <= -(WIN_SCORE - MAX_DEPTH)) {
+                return score - ply;
+            }
+            return score;
+        }
+
+        /**
+         * Converts a score read from the transposition table back into one relative to the root.
+         *
+         * @param score the score relative to the position
+         * @param ply   the number of moves from the root
+         * @return the score relative to the root
+         */
+        private int fromTable(int score, int ply) {
+            if (score >= WIN_SCORE - MAX_DEPTH) {
+                return score - ply;
+            }
+            if (score <= -(WIN_SCORE - MAX_DEPTH)) {
+                return score + ply;
+            }
+            return score;
+        }
+
+        /**
+         * Scores a position from the point of view of the given player by counting open lines.
+         *
+         * @param symbol the symbol of the player to move
+         * @return the heuristic score of the position
+         */
+        private int evaluate(char symbol) {
+            int words = state.getWordCount();
+            int xScore = 0;
+            int oScore = 0;
+            for (int w = 0; w < windowCount; w++) {
+                int offset = w * words;
+                int x = state.count(GameState.X, windowMasks, offset);
+                int o = state.count(GameState.O, windowMasks, offset);
+                if (o == 0) {
+                    xScore += windowWeights[x];
+                } else if (x == 0) {
+                    oScore += windowWeights[o];
+                }
+            }
+            int score = symbol == GameState.X ? xScore - oScore : oScore - xScore;
+            return Math.max(-WIN_SCORE / 2, Math.min(WIN_SCORE / 2, score));
+        }
+
+        /**
+         * Generates the candidate moves of a ply: empty cells next to an occupied cell
+         * (or the center on an empty board), ordered by how many occupied cells surround them.
+         *
+         * @return the number of generated moves
+         */
+        private int generateMoves(int ply, char symbol) {
+            int[] moves = moveBuffer(ply);
+            int[] keys = orderBuffers[ply];
+            int count = 0;
+
+            if (state.getMoveCount() == 0) {
+                moves[0] = (size / 2) * size + size / 2;
+                return 1;
+            }
+
+            for (int index = 0; index < cellCount; index++) {
+                if (!state.isEmpty(index)) {
+                    continue;
+                }
+                int row = index / size;
+                int column = index % size;
+                int neighbours = 0;
+                for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                    for (int c = Math.max(0, column - 1); c <= Math.min(size - 1, column + 1); c++) {
+                        char neighbour = state.getSymbol(r * size + c);
+                        if (neighbour != GameState.EMPTY) {
+                            neighbours += neighbour == symbol ? 2 : 3; // blocking is slightly preferred
+                        }
+                    }
+                }
+                if (neighbours == 0) {
+                    continue;
+                }
+
+                // Insertion sort, highest key first
+                int i = count++;
+                while (i > 0 && keys[i - 1] < neighbours) {
+                    keys[i] = keys[i - 1];
+                    moves[i] = moves[i - 1];
+                    i--;
+                }
+                keys[i] = neighbours;
+                moves[i] = index;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the move buffer of a ply, allocating it (and its ordering buffer) on first use.
+         */
+        private int[] moveBuffer(int ply) {
+            if (moveBuffers[ply] == null) {
+                moveBuffers[ply] = new int[cellCount];
+                orderBuffers[ply] = new int[cellCount];
+            }
+            return moveBuffers[ply];
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The LocalMoveChannel class is an in-process MoveChannel, used in place of the game server in tests and benchmarks.
+ * All channels opened on the same {@link Hub} play the same game: a move sent on one channel is delivered right away,
+ * on the sending thread, to the listeners of all other channels of the hub.
+ */
+public class LocalMoveChannel implements MoveChannel {
+
+    private final Hub hub;
+    private volatile Listener listener;
+    private volatile boolean closed;
+
+    private LocalMoveChannel(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void sendMove(int index, char symbol) {
+        if (closed) {
+            throw new IllegalStateException("The channel is closed");
+        }
+        for (LocalMoveChannel channel : hub.channels) {
+            if (channel != this) {
+                channel.deliver(index, symbol);
+            }
+        }
+    }
+
+    private void deliver(int index, char symbol) {
+        Listener current = listener;
+        if (current != null && !closed) {
+            current.onMove(index, symbol);
+        }
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        hub.channels.remove(this);
+    }
+
+    /**
+     * The Hub class connects the local channels of one game.
+     */
+    public static class Hub {
+
+        private final List<LocalMoveChannel> channels = new CopyOnWriteArrayList<>();
+
+        /**
+         * Opens a new channel on this hub.
+         *
+         * @return the new channel
+         */
+        public LocalMoveChannel connect() {
+            LocalMoveChannel channel = new LocalMoveChannel(this);
+            channels.add(channel);
+            return channel;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The MatchScope class owns the background tasks of one match, such as polls, sends and reconnection attempts.
+ * Tasks run on a small thread pool shared by all matches of the process, so many matches (for example bot clients
+ * in a load test) do not need a thread each. Closing the scope cancels every task of the match that has not finished,
+ * so no task outlives the match it belongs to.
+ * The class is thread-safe.
+ */
+public class MatchScope implements AutoCloseable {
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), new ScopeThreadFactory());
+
+    private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Runs a task in the background.
+     *
+     * @param task the task to run
+     * @return the future of the task
+     * @throws RejectedExecutionException if the scope is closed
+     */
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0);
+    }
+
+    /**
+     * Runs a task in the background after a delay.
+     *
+     * @param task        the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return the future of the task
+     * @throws RejectedExecutionException if the scope is closed
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        FutureHolder holder = new FutureHolder();
+        return track(holder, EXECUTOR.schedule(() -> {
+            try {
+                task.run();
+            } finally {
+                tasks.remove(holder.future);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Runs a task again and again, with a fixed delay between the end of one run and the start of the next,
+     * until the scope is closed.
+     *
+     * @param task         the task to run
+     * @param initialDelay the delay before the first run in milliseconds
+     * @param delayMillis  the delay between two runs in milliseconds
+     * @return the future of the task
+     * @throws RejectedExecutionException if the scope is closed
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delayMillis) {
+        return track(new FutureHolder(),
+                EXECUTOR.scheduleWithFixedDelay(task, initialDelay, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private ScheduledFuture<?> track(FutureHolder holder, ScheduledFuture<?> future) {
+        holder.future = future;
+        tasks.add(future);
+        if (future.isDone()) {
+            tasks.remove(future); // finished before it could find its own future
+        }
+        if (closed) {
+            future.cancel(true);
+            tasks.remove(future);
+            throw new RejectedExecutionException("The match scope is closed");
+        }
+        return future;
+    }
+
+    /**
+     * returns whether the scope was closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Cancels every task of the match that has not finished, interrupting the running ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Lets a one-shot task find its own future, to remove it from the scope when it is done.
+     */
+    private static final class FutureHolder {
+        private volatile Future<?> future;
+    }
+
+    /**
+     * Creates the daemon threads of the shared pool, so background tasks never keep the JVM alive.
+     */
+    private static final class ScopeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "match-io-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
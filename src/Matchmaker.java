@@ -0,0 +1,238 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Matchmaker class pairs players that are looking for an online match, and assigns them a match id and their
+ * symbols. Players are sorted into buckets by rating, so they are paired with players of similar strength.
+ * <p>
+ * Each bucket holds at most one waiting player: a player who finds someone waiting in their bucket is paired with
+ * them right away, otherwise they wait in the bucket. Both steps are single compare-and-set operations, so pairing
+ * takes constant time no matter how many players are waiting, and never blocks. A player who waits longer than the
+ * widening delay may also be paired with a player from a neighbouring bucket, one bucket further for every delay
+ * that passes, either when a new player arrives or in {@link #sweep()}.
+ * The player who waited plays X and moves first. The class is thread-safe and lock-free.
+ *
+ * @param <T> the type of the players, for example their connections
+ */
+public class Matchmaker<T> {
+
+    public static final int DEFAULT_BUCKET_WIDTH = 100;
+    public static final long DEFAULT_WIDEN_AFTER_MILLIS = 2000;
+    public static final int MAX_RATING = 4000;
+    public static final int DEFAULT_RATING = 1500;
+
+    /**
+     * The first match id handed out, far above the ids players pick when they join a match by id.
+     */
+    public static final long FIRST_MATCH_ID = 1L << 32;
+
+    private final int bucketWidth;
+    private final long widenAfterNanos;
+    private final Listener<T> listener;
+    private final AtomicReferenceArray<Ticket<T>> buckets;
+    private final AtomicLong nextMatchId = new AtomicLong(FIRST_MATCH_ID);
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Constructs a new Matchmaker with the default bucket width and widening delay.
+     *
+     * @param listener called for every pair of players
+     */
+    public Matchmaker(Listener<T> listener) {
+        this(DEFAULT_BUCKET_WIDTH, DEFAULT_WIDEN_AFTER_MILLIS, listener);
+    }
+
+    /**
+     * Constructs a new Matchmaker.
+     *
+     * @param bucketWidth      the rating range of one bucket
+     * @param widenAfterMillis how long a player waits before they may be paired one bucket further away
+     * @param listener         called for every pair of players, on the thread that found the pair
+     */
+    public Matchmaker(int bucketWidth, long widenAfterMillis, Listener<T> listener) {
+        if (bucketWidth < 1) {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        }
+        this.bucketWidth = bucketWidth;
+        this.widenAfterNanos = widenAfterMillis * 1_000_000L;
+        this.listener = listener;
+        buckets = new AtomicReferenceArray<>(MAX_RATING / bucketWidth + 1);
+    }
+
+    /**
+     * Looks for an opponent for a player. If someone suitable is waiting, the listener is called before this
+     * method returns; otherwise the player waits until another player arrives or a sweep pairs them.
+     *
+     * @param player the player
+     * @param rating the rating of the player
+     * @return the ticket of the player, to cancel the search
+     */
+    public Ticket<T> enqueue(T player, int rating) {
+        Ticket<T> ticket = new Ticket<>(player, bucketOf(rating));
+        place(ticket, System.nanoTime());
+        return ticket;
+    }
+
+    /**
+     * Pairs players that waited long enough with players of neighbouring buckets. Call it regularly, so players in
+     * quiet buckets do not wait until someone arrives in theirs.
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            Ticket<T> waiter = buckets.get(bucket);
+            if (waiter != null && now - waiter.since >= widenAfterNanos && buckets.compareAndSet(bucket, waiter, null)) {
+                waiting.decrementAndGet();
+                place(waiter, now); // as if they arrived again, but with their old waiting time
+            }
+        }
+    }
+
+    /**
+     * Pairs a player who is not in a bucket with a suitable waiting player, or lets them wait in their bucket.
+     * Players in buckets d apart are suitable when one of them waited at least d widening delays.
+     */
+    private void place(Ticket<T> ticket, long now) {
+        while (ticket.state.get() == Ticket.WAITING) {
+            Ticket<T> opponent = null;
+            for (int distance = 0; opponent == null && distance < buckets.length(); distance++) {
+                long required = now - distance * widenAfterNanos;
+                long since = ticket.since <= required ? Long.MAX_VALUE : required;
+                opponent = claim(ticket.bucket - distance, since);
+                if (opponent == null && distance > 0) {
+                    opponent = claim(ticket.bucket + distance, since);
+                }
+            }
+
+            if (opponent == null) {
+                if (buckets.compareAndSet(ticket.bucket, null, ticket)) {
+                    waiting.incrementAndGet();
+                    if (ticket.state.get() != Ticket.WAITING && buckets.compareAndSet(ticket.bucket, ticket, null)) {
+                        waiting.decrementAndGet(); // cancelled while it was being placed
+                    }
+                    return;
+                }
+                continue; // someone started waiting in the bucket meanwhile
+            }
+
+            if (!opponent.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+                continue; // the opponent cancelled
+            }
+            if (!ticket.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+                opponent.state.set(Ticket.WAITING); // this player cancelled, the opponent keeps waiting
+                place(opponent, now);
+                return;
+            }
+            boolean opponentWaitedLonger = opponent.since <= ticket.since;
+            listener.onMatch(nextMatchId.getAndIncrement(), opponentWaitedLonger ? opponent.player : ticket.player,
+                    opponentWaitedLonger ? ticket.player : opponent.player);
+            return;
+        }
+    }
+
+    /**
+     * Takes the player waiting in a bucket out of it, if they have been waiting since the given time or longer.
+     *
+     * @return the player, or null if there is none
+     */
+    private Ticket<T> claim(int bucket, long since) {
+        if (bucket < 0 || bucket >= buckets.length()) {
+            return null;
+        }
+        while (true) {
+            Ticket<T> waiter = buckets.get(bucket);
+            if (waiter == null || waiter.since > since) {
+                return null;
+            }
+            if (buckets.compareAndSet(bucket, waiter, null)) {
+                waiting.decrementAndGet();
+                if (waiter.state.get() == Ticket.WAITING) {
+                    return waiter;
+                }
+                // cancelled, look again
+            }
+        }
+    }
+
+    /**
+     * Stops looking for an opponent.
+     *
+     * @param ticket the ticket returned by enqueue
+     * @return true if the search was cancelled, false if the player was already paired
+     */
+    public boolean cancel(Ticket<T> ticket) {
+        if (!ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED)) {
+            return false;
+        }
+        if (buckets.compareAndSet(ticket.bucket, ticket, null)) {
+            waiting.decrementAndGet();
+        }
+        return true;
+    }
+
+    private int bucketOf(int rating) {
+        return Math.max(0, Math.min(MAX_RATING, rating)) / bucketWidth;
+    }
+
+    /**
+     * returns the number of players waiting for an opponent.
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * The Ticket class is the place of one player in the matchmaker.
+     *
+     * @param <T> the type of the player
+     */
+    public static final class Ticket<T> {
+
+        private static final int WAITING = 0;
+        private static final int MATCHED = 1;
+        private static final int CANCELLED = 2;
+
+        private final T player;
+        private final int bucket;
+        private final long since = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Ticket(T player, int bucket) {
+            this.player = player;
+            this.bucket = bucket;
+        }
+
+        /**
+         * returns the player of the ticket.
+         */
+        public T getPlayer() {
+            return player;
+        }
+
+        /**
+         * returns whether the player is still waiting for an opponent.
+         */
+        public boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+    }
+
+    /**
+     * The Listener interface is told about every pair of players the matchmaker finds.
+     *
+     * @param <T> the type of the players
+     */
+    @FunctionalInterface
+    public interface Listener<T> {
+
+        /**
+         * Called when two players were paired.
+         *
+         * @param matchId the id of their new match
+         * @param playerX the player who plays X and moves first
+         * @param playerO the player who plays O
+         */
+        void onMatch(long matchId, T playerX, T playerO);
+    }
+}
@@ -0,0 +1,238 @@
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.*;
+import javax.swing.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Metrics class is the registry of the latency histograms and counters of the process.
+ * Metrics are created on first use by name and live as long as the process. Histograms record nanoseconds.
+ * <p>
+ * The registry is exported in two ways:
+ * <ul>
+ *     <li>as the JMX MBean {@value #OBJECT_NAME}, with the count, mean, p50, p99 and maximum of every histogram and
+ *     the value of every counter as attributes, for example for JConsole;</li>
+ *     <li>as text in the Prometheus format at {@code http://host:port/metrics}, if the {@value #PORT_PROPERTY}
+ *     system property gives a port.</li>
+ * </ul>
+ * The class is thread-safe.
+ */
+public final class Metrics {
+
+    public static final String OBJECT_NAME = "tictactoe:type=Metrics";
+    public static final String PORT_PROPERTY = "tictactoe.metrics.port";
+
+    public static final String AI_MOVE = "ai_move_nanos";
+    public static final String MOVE_ROUND_TRIP = "move_round_trip_nanos";
+    public static final String DB_ROUND_TRIP = "db_round_trip_nanos";
+    public static final String POLL_CYCLE = "poll_cycle_nanos";
+    public static final String EDT_BLOCKED = "edt_blocked_nanos";
+
+    public static final String SERVER_CONNECTIONS = "server_connections";
+    public static final String MOVES_ACCEPTED = "server_moves_accepted";
+    public static final String MOVES_REFUSED = "server_moves_refused";
+    public static final String MATCHES_MADE = "matchmaker_matches";
+    public static final String SPECTATORS_DROPPED = "server_spectators_dropped";
+    public static final String CLIENT_RECONNECTS = "client_reconnects";
+    public static final String CLIENT_REQUESTS_REFUSED = "client_requests_refused";
+    public static final String DB_WRITE_ERRORS = "db_write_errors";
+    public static final String DB_MOVES_LOST = "db_moves_lost";
+    public static final String DB_INVALID_MOVES = "db_invalid_moves";
+
+    private static final long EDT_PROBE_INTERVAL_MILLIS = 100;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final AtomicBoolean EDT_MONITORED = new AtomicBoolean();
+
+    static {
+        export();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Starts measuring how long the Event Dispatch Thread is blocked, into the {@value #EDT_BLOCKED} histogram:
+     * every {@value #EDT_PROBE_INTERVAL_MILLIS} ms a probe is queued on the EDT, and the time until it runs is
+     * recorded. Calling it again has no effect.
+     */
+    public static void monitorEventDispatchThread() {
+        if (!EDT_MONITORED.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Histogram blocked = histogram(EDT_BLOCKED);
+        timer.scheduleWithFixedDelay(() -> {
+            long queued = System.nanoTime();
+            SwingUtilities.invokeLater(() -> blocked.recordSince(queued));
+        }, EDT_PROBE_INTERVAL_MILLIS, EDT_PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format.
+     *
+     * @return the text
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        HISTOGRAMS.forEach((name, histogram) -> {
+            text.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.getPercentile(quantile * 100)).append('\n');
+            }
+            text.append(name).append("_max ").append(histogram.getMax()).append('\n');
+            text.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        });
+        COUNTERS.forEach((name, counter) -> {
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.sum()).append('\n');
+        });
+        return text.toString();
+    }
+
+    /**
+     * Registers the MBean and starts the text endpoint if a port is configured.
+     */
+    private static void export() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(null); // served on the server's own dispatcher thread
+            server.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The MetricsMBean class exposes the registry over JMX. Its attributes follow the metrics that exist at the time
+     * the MBean is inspected.
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private static final String[] SUFFIXES = {"count", "mean", "p50", "p99", "max"};
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            LongAdder counter = COUNTERS.get(attribute);
+            if (counter != null) {
+                return counter.sum();
+            }
+            int dot = attribute.lastIndexOf('.');
+            Histogram histogram = dot < 0 ? null : HISTOGRAMS.get(attribute.substring(0, dot));
+            if (histogram == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return switch (attribute.substring(dot + 1)) {
+                case "count" -> histogram.getCount();
+                case "mean" -> (long) histogram.getMean();
+                case "p50" -> histogram.getPercentile(50);
+                case "p99" -> histogram.getPercentile(99);
+                case "max" -> histogram.getMax();
+                default -> throw new AttributeNotFoundException(attribute);
+            };
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the interface allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+            throw new MBeanException(new UnsupportedOperationException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : HISTOGRAMS.keySet()) {
+                for (String suffix : SUFFIXES) {
+                    attributes.add(new MBeanAttributeInfo(name + "." + suffix, "long", name + " " + suffix,
+                            true, false, false));
+                }
+            }
+            for (String name : COUNTERS.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Latency histograms and counters of the game",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
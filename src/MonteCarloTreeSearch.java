@@ -0,0 +1,298 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The MonteCarloTreeSearch class finds moves by Monte Carlo Tree Search instead of exhaustive minimax.
+ * Every iteration selects a path down the tree with the UCT formula, expands one new move, plays the game
+ * to the end with random moves (a playout) and adds the result to every node on the path.
+ * The move that was visited most often is played. Strength grows with the playout budget, so the budget is the
+ * knob that trades CPU time for playing strength, and the engine works on boards of any size.
+ * <p>
+ * The search stops after a number of playouts, after a time budget, or whichever comes first.
+ * With more than one thread, all threads work on the same tree (tree parallelization). A thread that walks
+ * through a node counts a visit right away (a virtual loss), so other threads prefer different paths until the
+ * playout result is known.
+ * A search instance can be reused for many moves, but must not run two searches at once.
+ */
+public class MonteCarloTreeSearch {
+
+    public static final int DEFAULT_PLAYOUTS = 20_000;
+
+    /**
+     * The exploration constant of UCT. Higher values explore rarely visited moves more.
+     */
+    private static final double EXPLORATION = 1.4;
+
+    private static final int CLOCK_CHECK_INTERVAL = 64; // playouts between two clock reads
+
+    private final int playoutBudget;
+    private final long timeBudgetNanos;
+    private final int threadCount;
+    private final AtomicLong playouts = new AtomicLong();
+
+    /**
+     * Constructs a new single-threaded MonteCarloTreeSearch with the default playout budget.
+     */
+    public MonteCarloTreeSearch() {
+        this(DEFAULT_PLAYOUTS, 0, 1);
+    }
+
+    /**
+     * Constructs a new MonteCarloTreeSearch.
+     *
+     * @param playoutBudget    the number of playouts per move, or 0 for no limit
+     * @param timeBudgetMillis the time the search may take per move in milliseconds, or 0 for no limit
+     * @param threadCount      the number of threads that search the tree, including the calling thread
+     * @throws IllegalArgumentException if there is neither a playout nor a time budget, or no thread
+     */
+    public MonteCarloTreeSearch(int playoutBudget, long timeBudgetMillis, int threadCount) {
+        if (playoutBudget < 0 || timeBudgetMillis < 0 || (playoutBudget == 0 && timeBudgetMillis == 0)) {
+            throw new IllegalArgumentException("Invalid budget: " + playoutBudget + " playouts, "
+                    + timeBudgetMillis + " ms");
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.playoutBudget = playoutBudget;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Finds the best move for the given player.
+     * The given state is not modified.
+     *
+     * @param position the position to search
+     * @param symbol   the symbol (X or O) of the player to move
+     * @return the index of the best move
+     * @throws IllegalStateException if the game is already over
+     */
+    public int findBestMove(GameState position, char symbol) {
+        return findBestMove(position, symbol, () -> false);
+    }
+
+    /**
+     * Finds the best move for the given player, or the best move found so far if the search is cancelled.
+     * The given state is not modified.
+     *
+     * @param position     the position to search
+     * @param symbol       the symbol (X or O) of the player to move
+     * @param cancellation polled by the search threads together with the clock; returns true to stop the search
+     * @return the index of the best move
+     * @throws IllegalStateException if the game is already over
+     */
+    public int findBestMove(GameState position, char symbol, BooleanSupplier cancellation) {
+        if (position.isOver()) {
+            throw new IllegalStateException("No valid move found.");
+        }
+        long deadline = timeBudgetNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + timeBudgetNanos;
+        Node root = new Node(-1, GameState.opponent(symbol), null, position.isOver());
+        playouts.set(0);
+
+        List<ForkJoinTask<?>> helpers = new ArrayList<>(threadCount - 1);
+        for (int i = 1; i < threadCount; i++) {
+            helpers.add(ForkJoinPool.commonPool().submit(() -> search(root, position, deadline, cancellation)));
+        }
+        search(root, position, deadline, cancellation);
+        helpers.forEach(ForkJoinTask::join);
+
+        Node best = root.mostVisitedChild();
+        if (best == null) {
+            throw new IllegalStateException("No valid move found.");
+        }
+        return best.move;
+    }
+
+    /**
+     * Runs playouts on the shared tree until the budget is used up.
+     */
+    private void search(Node root, GameState position, long deadline, BooleanSupplier cancellation) {
+        GameState state = new GameState(position);
+        int[] path = new int[state.getCellCount()]; // moves played from the root, to take them back afterwards
+        int[] empty = new int[state.getCellCount()];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (true) {
+            long done = playouts.incrementAndGet();
+            if (playoutBudget > 0 && done > playoutBudget) {
+                playouts.decrementAndGet();
+                return;
+            }
+            if (done % CLOCK_CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || cancellation.getAsBoolean())) {
+                return;
+            }
+
+            // Selection and expansion
+            int depth = 0;
+            Node node = root;
+            while (!node.terminal) {
+                Node next = node.selectOrExpand(state);
+                if (next == null) {
+                    break; // no candidate moves left
+                }
+                state.place(next.move, next.player);
+                path[depth++] = next.move;
+                node = next;
+                if (next.justExpanded) {
+                    next.justExpanded = false;
+                    break;
+                }
+            }
+
+            // Playout
+            char toMove = GameState.opponent(node.player);
+            if (!state.isOver()) {
+                int emptyCount = 0;
+                for (int i = 0; i < state.getCellCount(); i++) {
+                    if (state.isEmpty(i)) {
+                        empty[emptyCount++] = i;
+                    }
+                }
+                while (!state.isOver()) {
+                    int pick = random.nextInt(emptyCount);
+                    int move = empty[pick];
+                    empty[pick] = empty[--emptyCount];
+                    state.place(move, toMove);
+                    path[depth++] = move;
+                    toMove = GameState.opponent(toMove);
+                }
+            }
+            char winner = state.getWinner();
+
+            // Take back the playout and tree moves
+            for (int i = depth - 1; i >= 0; i--) {
+                state.remove(path[i]);
+            }
+
+            // Backpropagation
+            for (Node n = node; n != null; n = n.parent) {
+                n.addResult(winner);
+            }
+        }
+    }
+
+    /**
+     * returns the number of playouts of the last search.
+     */
+    public long getPlayoutCount() {
+        return playouts.get();
+    }
+
+    /**
+     * The Node class is one position of the search tree, reached by playing its move.
+     * Its statistics are kept from the point of view of the player who played the move:
+     * a win counts 2, a draw 1 and a loss 0.
+     */
+    private static final class Node {
+
+        private final int move;
+        private final char player; // the player who played the move leading to this node
+        private final Node parent;
+        private final boolean terminal;
+        private final List<Node> children = new ArrayList<>();
+
+        private int[] untried; // candidate moves not expanded yet, generated on the first visit
+        private int untriedCount;
+        private int visits;
+        private int score;
+        private boolean justExpanded; // only read and written by the thread that expanded the node
+
+        private Node(int move, char player, Node parent, boolean terminal) {
+            this.move = move;
+            this.player = player;
+            this.parent = parent;
+            this.terminal = terminal;
+        }
+
+        /**
+         * Expands one untried move, or selects the child with the highest UCT value if every move was tried.
+         * The chosen child gets a visit right away, as a virtual loss for other threads.
+         *
+         * @param state the position of this node, used to generate the candidate moves
+         * @return the chosen child, or null if there are no moves
+         */
+        private synchronized Node selectOrExpand(GameState state) {
+            if (untried == null) {
+                untried = new int[state.getCellCount()];
+                untriedCount = state.collectCandidateMoves(untried);
+            }
+
+            Node chosen;
+            if (untriedCount > 0) {
+                int pick = ThreadLocalRandom.current().nextInt(untriedCount);
+                int move = untried[pick];
+                untried[pick] = untried[--untriedCount];
+
+                char mover = GameState.opponent(player);
+                state.place(move, mover);
+                boolean over = state.isOver();
+                state.remove(move);
+
+                chosen = new Node(move, mover, this, over);
+                chosen.justExpanded = true;
+                children.add(chosen);
+            } else {
+                chosen = bestUctChild();
+            }
+            if (chosen != null) {
+                chosen.addVisit();
+            }
+            return chosen;
+        }
+
+        private Node bestUctChild() {
+            double logVisits = Math.log(Math.max(1, visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                double value = child.uct(logVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private synchronized double uct(double logParentVisits) {
+            if (visits == 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return score / (2.0 * visits) + EXPLORATION * Math.sqrt(logParentVisits / visits);
+        }
+
+        private synchronized void addVisit() {
+            visits++;
+        }
+
+        private synchronized void addResult(char winner) {
+            if (parent == null) {
+                visits++; // the root is not visited through selectOrExpand
+            }
+            if (winner == player) {
+                score += 2;
+            } else if (winner == GameState.EMPTY) {
+                score += 1;
+            }
+        }
+
+        private synchronized Node mostVisitedChild() {
+            Node best = null;
+            for (Node child : children) {
+                if (best == null || child.visitCount() > best.visitCount()) {
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private synchronized int visitCount() {
+            return visits;
+        }
+    }
+}
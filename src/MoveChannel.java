@@ -0,0 +1,66 @@
+/**
+ * The MoveChannel interface connects the two players of an online game.
+ * A player sends its own moves through the channel, and the channel pushes the moves of the opponent to its
+ * listener as soon as they arrive, so clients do not have to ask for updates.
+ * The listener may be called on any thread, so user interface code has to hand the move over to the
+ * Event Dispatch Thread itself.
+ */
+public interface MoveChannel extends AutoCloseable {
+
+    /**
+     * Sends a move of this player to the opponent.
+     *
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) of the player
+     */
+    void sendMove(int index, char symbol);
+
+    /**
+     * Sets the listener that receives the moves of the opponent.
+     * Moves that arrive before a listener is set may be dropped.
+     *
+     * @param listener the listener to notify
+     */
+    void setListener(Listener listener);
+
+    /**
+     * Closes the channel. No moves are sent or delivered afterwards.
+     */
+    @Override
+    void close();
+
+    /**
+     * The Listener interface receives the moves pushed by a MoveChannel.
+     */
+    interface Listener {
+
+        /**
+         * Called when the opponent made a move.
+         *
+         * @param index  the index of the cell
+         * @param symbol the symbol (X or O) of the opponent
+         */
+        void onMove(int index, char symbol);
+
+        /**
+         * Called when the authoritative state of the match replaces what the player sees, for example when the
+         * player joins, or when a move the player already showed was refused and has to be rolled back.
+         * The state already includes the moves of this player that are still on their way.
+         *
+         * @param state  the board, a new object owned by the listener
+         * @param toMove the symbol (X or O) of the player to move
+         */
+        default void onSnapshot(GameState state, char toMove) {
+        }
+
+        /**
+         * Called when a channel that looks for an opponent was put into a match.
+         * A snapshot of the match follows.
+         *
+         * @param matchId the id of the match
+         * @param symbol  the symbol (X or O) this player plays
+         */
+        default void onMatchFound(long matchId, char symbol) {
+        }
+    }
+}
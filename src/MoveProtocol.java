@@ -0,0 +1,510 @@
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The MoveProtocol class encodes and decodes the binary messages exchanged between the {@link GameServer} and its
+ * clients. Messages are written straight into and read straight out of the connection's ByteBuffers, without
+ * intermediate strings or arrays; only player names are decoded into strings.
+ * <p>
+ * The stream is a sequence of frames. A frame is its length as a varint, followed by one or more messages, so
+ * several moves or snapshots can share a frame. Every message starts with its type byte and the match id as a varint:
+ * <ul>
+ *     <li>JOIN: the symbol byte and the name of the joining player.</li>
+ *     <li>MOVES: the sequence number of the first move, the number of moves, and one packed cell per move.
+ *     The moves have consecutive sequence numbers, so only the first one is sent.</li>
+ *     <li>SNAPSHOT: the sequence number of the last move, the symbol byte of the player to move, the board size,
+ *     the win length, the number of occupied cells and one packed cell per occupied cell.</li>
+ *     <li>ERROR: the error code byte and the sequence number of the refused request, or 0.</li>
+ *     <li>QUEUE: the name of the player, who asks the {@link Matchmaker} for an opponent. The server looks up the
+ *     rating of the player by the name. The match id is 0.</li>
+ *     <li>ASSIGN: the symbol byte the player plays in the match the matchmaker found. The player is already joined.</li>
+ *     <li>WATCH: nothing else. The client watches the match as a spectator: it gets snapshots and the moves of both
+ *     players, but cannot move.</li>
+ * </ul>
+ * A packed cell is a varint of {@code cell << 1 | (symbol == O ? 1 : 0)}, one byte for the cells of a 3x3 board,
+ * so a single move costs about six bytes on the wire. Varints are unsigned LEB128. A name is its length in bytes as a
+ * varint, followed by its UTF-8 bytes; an empty name stands for an anonymous player.
+ */
+public final class MoveProtocol {
+
+    public static final byte JOIN = 1;
+    public static final byte MOVES = 2;
+    public static final byte SNAPSHOT = 3;
+    public static final byte ERROR = 4;
+    public static final byte QUEUE = 5;
+    public static final byte ASSIGN = 6;
+    public static final byte WATCH = 7;
+
+    public static final byte ERROR_MALFORMED = 1;
+    public static final byte ERROR_NOT_IN_MATCH = 2;
+    public static final byte ERROR_ALREADY_IN_MATCH = 3;
+    public static final byte ERROR_SYMBOL_TAKEN = 4;
+    public static final byte ERROR_NOT_YOUR_TURN = 5;
+    public static final byte ERROR_INVALID_CELL = 6;
+    public static final byte ERROR_OUT_OF_SEQUENCE = 7;
+
+    /**
+     * The largest frame, in bytes without its length. Its length varint always fits in two bytes.
+     */
+    public static final int MAX_FRAME_LENGTH = 1024;
+
+    /**
+     * The largest number of bytes a frame takes on the wire, including its length.
+     */
+    public static final int MAX_FRAME_SIZE = MAX_FRAME_LENGTH + 2;
+
+    /**
+     * The largest board size a snapshot may have. A snapshot of a full board of this size fits in one frame.
+     */
+    public static final int MAX_BOARD_SIZE = 20;
+
+    /**
+     * The longest player name, in UTF-8 bytes. It fits into the player column of the ratings table.
+     */
+    public static final int MAX_NAME_LENGTH = 64;
+
+    private MoveProtocol() {
+    }
+
+    /**
+     * Starts a frame at the position of the buffer. Messages are then appended with the put methods,
+     * and the frame is finished with {@link #endFrame(ByteBuffer, int)}.
+     *
+     * @param out the buffer to write to
+     * @return the start of the frame, to pass to endFrame
+     */
+    public static int beginFrame(ByteBuffer out) {
+        int start = out.position();
+        out.position(start + 2); // room for the longest length varint
+        return start;
+    }
+
+    /**
+     * Finishes a frame by writing its length in front of its messages.
+     *
+     * @param out   the buffer the messages were written to
+     * @param start the start returned by beginFrame
+     * @throws IllegalStateException if the frame is longer than {@value #MAX_FRAME_LENGTH} bytes
+     */
+    public static void endFrame(ByteBuffer out, int start) {
+        int end = out.position();
+        int length = end - start - 2;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IllegalStateException("Frame of " + length + " bytes is too long");
+        }
+        if (length >= 0x80) {
+            out.put(start, (byte) (length | 0x80));
+            out.put(start + 1, (byte) (length >>> 7));
+            return;
+        }
+        // a one byte length: move the messages one byte to the front
+        out.put(start, (byte) length);
+        for (int i = start + 2; i < end; i++) {
+            out.put(i - 1, out.get(i));
+        }
+        out.position(end - 1);
+    }
+
+    /**
+     * Appends a JOIN message to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match to join
+     * @param symbol  the symbol (X or O) the player wants to play
+     * @param player  the name of the player, or an empty string
+     * @throws IllegalArgumentException if the name is longer than {@value #MAX_NAME_LENGTH} bytes
+     */
+    public static void putJoin(ByteBuffer out, long matchId, char symbol, String player) {
+        out.put(JOIN);
+        putVarint(out, matchId);
+        out.put((byte) symbol);
+        putName(out, player);
+    }
+
+    /**
+     * Appends a MOVES message with a single move to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the move
+     * @param cell    the index of the cell
+     * @param symbol  the symbol (X or O) of the player
+     */
+    public static void putMove(ByteBuffer out, long matchId, int seq, int cell, char symbol) {
+        out.put(MOVES);
+        putVarint(out, matchId);
+        putVarint(out, seq);
+        putVarint(out, 1);
+        putVarint(out, pack(cell, symbol));
+    }
+
+    /**
+     * Appends a MOVES message with consecutive moves to the current frame.
+     *
+     * @param out      the buffer to write to
+     * @param matchId  the id of the match
+     * @param firstSeq the sequence number of the first move
+     * @param packed   the packed cells of the moves, see {@link #pack(int, char)}
+     * @param count    the number of moves
+     */
+    public static void putMoves(ByteBuffer out, long matchId, int firstSeq, int[] packed, int count) {
+        out.put(MOVES);
+        putVarint(out, matchId);
+        putVarint(out, firstSeq);
+        putVarint(out, count);
+        for (int i = 0; i < count; i++) {
+            putVarint(out, packed[i]);
+        }
+    }
+
+    /**
+     * Appends a SNAPSHOT message with the occupied cells of a board to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the last move of the match
+     * @param toMove  the symbol (X or O) of the player to move
+     * @param state   the board
+     */
+    public static void putSnapshot(ByteBuffer out, long matchId, int seq, char toMove, GameState state) {
+        out.put(SNAPSHOT);
+        putVarint(out, matchId);
+        putVarint(out, seq);
+        out.put((byte) toMove);
+        putVarint(out, state.getSize());
+        putVarint(out, state.getWinLength());
+        putVarint(out, state.getMoveCount());
+        for (int cell = 0; cell < state.getCellCount(); cell++) {
+            char symbol = state.getSymbol(cell);
+            if (symbol != GameState.EMPTY) {
+                putVarint(out, pack(cell, symbol));
+            }
+        }
+    }
+
+    /**
+     * Appends an ERROR message to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match, or 0 if the player is not in a match
+     * @param code    the error code
+     * @param seq     the sequence number of the refused request, or 0
+     */
+    public static void putError(ByteBuffer out, long matchId, byte code, int seq) {
+        out.put(ERROR);
+        putVarint(out, matchId);
+        out.put(code);
+        putVarint(out, seq);
+    }
+
+    /**
+     * Appends a QUEUE message to the current frame.
+     *
+     * @param out    the buffer to write to
+     * @param player the name of the player, or an empty string
+     * @throws IllegalArgumentException if the name is longer than {@value #MAX_NAME_LENGTH} bytes
+     */
+    public static void putQueue(ByteBuffer out, String player) {
+        out.put(QUEUE);
+        putVarint(out, 0);
+        putName(out, player);
+    }
+
+    /**
+     * Appends an ASSIGN message to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match the player was put into
+     * @param symbol  the symbol (X or O) the player plays
+     */
+    public static void putAssign(ByteBuffer out, long matchId, char symbol) {
+        out.put(ASSIGN);
+        putVarint(out, matchId);
+        out.put((byte) symbol);
+    }
+
+    /**
+     * Appends a WATCH message to the current frame.
+     *
+     * @param out     the buffer to write to
+     * @param matchId the id of the match to watch
+     */
+    public static void putWatch(ByteBuffer out, long matchId) {
+        out.put(WATCH);
+        putVarint(out, matchId);
+    }
+
+    /**
+     * Decodes every complete frame in the buffer and passes its messages to the handler.
+     * The buffer must be in read mode. The bytes of an incomplete frame are left in the buffer.
+     *
+     * @param in      the buffer to read from
+     * @param handler the handler to pass the messages to
+     * @throws ProtocolException if the data is not a valid frame
+     */
+    public static void decode(ByteBuffer in, Handler handler) throws ProtocolException {
+        while (in.hasRemaining()) {
+            int start = in.position();
+            int length;
+            try {
+                length = (int) getVarint(in);
+            } catch (BufferUnderflowException e) {
+                in.position(start);
+                return;
+            }
+            if (length < 0 || length > MAX_FRAME_LENGTH) {
+                throw new ProtocolException("Frame of " + length + " bytes is too long");
+            }
+            if (in.remaining() < length) {
+                in.position(start);
+                return;
+            }
+
+            int limit = in.limit();
+            try {
+                in.limit(in.position() + length);
+                while (in.hasRemaining()) {
+                    decodeMessage(in, handler);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new ProtocolException("Malformed message: " + e);
+            } finally {
+                in.limit(limit);
+            }
+        }
+    }
+
+    private static void decodeMessage(ByteBuffer in, Handler handler) throws ProtocolException {
+        byte type = in.get();
+        long matchId = getVarint(in);
+        switch (type) {
+            case JOIN -> {
+                char symbol = (char) in.get();
+                handler.onJoin(matchId, symbol, getName(in));
+            }
+            case MOVES -> {
+                int seq = getInt(in);
+                int count = getInt(in);
+                for (int i = 0; i < count; i++) {
+                    int packed = getInt(in);
+                    handler.onMove(matchId, seq + i, cellOf(packed), symbolOf(packed));
+                }
+            }
+            case SNAPSHOT -> {
+                int seq = getInt(in);
+                char toMove = (char) in.get();
+                int size = getInt(in);
+                int winLength = getInt(in);
+                if (size > MAX_BOARD_SIZE) {
+                    throw new ProtocolException("Snapshot board too large: " + size);
+                }
+                GameState state = new GameState(size, winLength); // checks the win length against the size
+                int count = getInt(in);
+                for (int i = 0; i < count; i++) {
+                    int packed = getInt(in);
+                    if (cellOf(packed) >= state.getCellCount()) {
+                        throw new ProtocolException("Snapshot cell out of range: " + cellOf(packed));
+                    }
+                    state.place(cellOf(packed), symbolOf(packed));
+                }
+                handler.onSnapshot(matchId, seq, toMove, state);
+            }
+            case ERROR -> {
+                byte code = in.get();
+                handler.onError(matchId, code, getInt(in));
+            }
+            case QUEUE -> handler.onQueue(getName(in));
+            case ASSIGN -> handler.onAssign(matchId, (char) in.get());
+            case WATCH -> handler.onWatch(matchId);
+            default -> throw new ProtocolException("Unknown message type " + type);
+        }
+    }
+
+    /**
+     * Packs a cell and a symbol into one number.
+     *
+     * @param cell   the index of the cell
+     * @param symbol the symbol (X or O)
+     * @return the packed cell
+     */
+    public static int pack(int cell, char symbol) {
+        return cell << 1 | (symbol == GameState.O ? 1 : 0);
+    }
+
+    /**
+     * Returns the cell of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return the index of the cell
+     */
+    public static int cellOf(int packed) {
+        return packed >>> 1;
+    }
+
+    /**
+     * Returns the symbol of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return the symbol (X or O)
+     */
+    public static char symbolOf(int packed) {
+        return (packed & 1) == 0 ? GameState.X : GameState.O;
+    }
+
+    /**
+     * Writes an unsigned varint: seven bits per byte, lowest first, with the high bit set on all but the last byte.
+     *
+     * @param out   the buffer to write to
+     * @param value the value, treated as unsigned
+     */
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     * @throws BufferUnderflowException if the buffer ends inside the varint
+     * @throws ProtocolException        if the varint is longer than ten bytes
+     */
+    static long getVarint(ByteBuffer in) throws ProtocolException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Varint is too long");
+    }
+
+    /**
+     * Writes a player name: its length in UTF-8 bytes as a varint, followed by the bytes.
+     *
+     * @param out  the buffer to write to
+     * @param name the name
+     * @throws IllegalArgumentException if the name is longer than {@value #MAX_NAME_LENGTH} bytes
+     */
+    static void putName(ByteBuffer out, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name of " + bytes.length + " bytes is too long: " + name);
+        }
+        putVarint(out, bytes.length);
+        out.put(bytes);
+    }
+
+    /**
+     * Reads a player name.
+     *
+     * @param in the buffer to read from
+     * @return the name
+     * @throws BufferUnderflowException if the buffer ends inside the name
+     * @throws ProtocolException        if the name is longer than {@value #MAX_NAME_LENGTH} bytes
+     */
+    static String getName(ByteBuffer in) throws ProtocolException {
+        int length = getInt(in);
+        if (length > MAX_NAME_LENGTH) {
+            throw new ProtocolException("Name of " + length + " bytes is too long");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int getInt(ByteBuffer in) throws ProtocolException {
+        long value = getVarint(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new ProtocolException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * The Handler interface receives the decoded messages. Messages a side does not expect are ignored by default.
+     */
+    public interface Handler {
+
+        /**
+         * Called for a JOIN message.
+         *
+         * @param matchId the id of the match
+         * @param symbol  the symbol (X or O) the player wants to play
+         * @param player  the name of the player, empty if anonymous
+         * @throws ProtocolException to close the connection
+         */
+        default void onJoin(long matchId, char symbol, String player) throws ProtocolException {
+        }
+
+        /**
+         * Called for every move of a MOVES message.
+         *
+         * @param matchId the id of the match
+         * @param seq     the sequence number of the move
+         * @param cell    the index of the cell
+         * @param symbol  the symbol (X or O) of the player
+         * @throws ProtocolException to close the connection
+         */
+        default void onMove(long matchId, int seq, int cell, char symbol) throws ProtocolException {
+        }
+
+        /**
+         * Called for a SNAPSHOT message.
+         *
+         * @param matchId the id of the match
+         * @param seq     the sequence number of the last move of the match
+         * @param toMove  the symbol (X or O) of the player to move
+         * @param state   the board, a new object owned by the handler
+         * @throws ProtocolException to close the connection
+         */
+        default void onSnapshot(long matchId, int seq, char toMove, GameState state) throws ProtocolException {
+        }
+
+        /**
+         * Called for an ERROR message.
+         *
+         * @param matchId the id of the match
+         * @param code    the error code
+         * @param seq     the sequence number of the refused request, or 0
+         */
+        default void onError(long matchId, byte code, int seq) {
+        }
+
+        /**
+         * Called for a QUEUE message.
+         *
+         * @param player the name of the player, empty if anonymous
+         * @throws ProtocolException to close the connection
+         */
+        default void onQueue(String player) throws ProtocolException {
+        }
+
+        /**
+         * Called for an ASSIGN message.
+         *
+         * @param matchId the id of the match
+         * @param symbol  the symbol (X or O) the player plays
+         * @throws ProtocolException to close the connection
+         */
+        default void onAssign(long matchId, char symbol) throws ProtocolException {
+        }
+
+        /**
+         * Called for a WATCH message.
+         *
+         * @param matchId the id of the match to watch
+         * @throws ProtocolException to close the connection
+         */
+        default void onWatch(long matchId) throws ProtocolException {
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MoveStore class stores the moves of online matches in the match_moves table of the MySQL database.
+ * All matches of the process share one instance and its bounded {@link ConnectionPool}.
+ * The statements are prepared on the server and cached by the driver per connection, so a move only sends its
+ * parameters instead of a new SQL string. Batches of moves are rewritten by the driver into one multi-row insert.
+ * <p>
+ * Every row belongs to a match and has a sequence number that grows by one with every move of the match, so many
+ * matches can share the table. The primary key (match_id, seq) answers the reads of new moves with an index
+ * range scan. The time of every query, including the wait for a connection, is recorded in the
+ * {@value Metrics#DB_ROUND_TRIP} histogram.
+ */
+public class MoveStore {
+
+    static final String URL = "jdbc:mysql://195.179.236.154:3306/u457888522_firstDB"
+            + "?useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=64&prepStmtCacheSqlLimit=512"
+            + "&rewriteBatchedStatements=true";
+    static final String USERNAME = "u457888522_daniel";
+    static final String PASSWORD = "Password123";
+
+    static final int POOL_SIZE = 8;
+    static final long BORROW_TIMEOUT_MILLIS = 5000;
+
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS match_moves ("
+            + "match_id BIGINT NOT NULL, "
+            + "seq INT NOT NULL, "
+            + "cell SMALLINT NOT NULL, "
+            + "sign CHAR(1) NOT NULL, "
+            + "PRIMARY KEY (match_id, seq))";
+    static final String SELECT_LAST_SEQ = "SELECT COALESCE(MAX(seq), 0) FROM match_moves WHERE match_id = ?";
+    static final String SELECT_NEW_MOVES =
+            "SELECT seq, cell, sign FROM match_moves WHERE match_id = ? AND seq > ? ORDER BY seq";
+    static final String INSERT_MOVE = "INSERT INTO match_moves (match_id, seq, cell, sign) VALUES (?, ?, ?, ?)";
+
+    private final ConnectionPool pool;
+    private final Histogram roundTrip = Metrics.histogram(Metrics.DB_ROUND_TRIP);
+
+    /**
+     * Constructs a new MoveStore that uses the given pool and creates the moves table if it does not exist.
+     *
+     * @param pool the pool to borrow connections from
+     * @throws SQLException if the table cannot be created
+     */
+    public MoveStore(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        Connection connection = pool.borrow();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_TABLE);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Returns the move store shared by all matches of the process, connecting on first use.
+     *
+     * @return the shared move store
+     */
+    public static MoveStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the sequence number of the last move of a match.
+     *
+     * @param matchId the id of the match
+     * @return the last sequence number, or 0 if the match has no moves
+     * @throws SQLException if the database cannot be read
+     */
+    public int lastSeq(long matchId) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_LAST_SEQ)) {
+            statement.setLong(1, matchId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        } finally {
+            pool.release(connection);
+            roundTrip.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the moves of a match after the given sequence number, in order.
+     *
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the last move already seen
+     * @return the new moves
+     * @throws SQLException if the database cannot be read
+     */
+    public List<Move> movesAfter(long matchId, int seq) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_NEW_MOVES)) {
+            statement.setLong(1, matchId);
+            statement.setInt(2, seq);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<Move> moves = new ArrayList<>();
+                while (resultSet.next()) {
+                    moves.add(new Move(matchId, resultSet.getInt(1), resultSet.getInt(2),
+                            Character.toUpperCase(resultSet.getString(3).charAt(0))));
+                }
+                return moves;
+            }
+        } finally {
+            pool.release(connection);
+            roundTrip.recordSince(start);
+        }
+    }
+
+    /**
+     * Stores a move.
+     *
+     * @param move the move to store
+     * @throws SQLException if the move cannot be written, for example because its sequence number is taken
+     */
+    public void insert(Move move) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_MOVE)) {
+            statement.setLong(1, move.matchId());
+            statement.setInt(2, move.seq());
+            statement.setInt(3, move.cell());
+            statement.setString(4, Character.toString(move.sign()));
+            statement.executeUpdate();
+        } finally {
+            pool.release(connection);
+            roundTrip.recordSince(start);
+        }
+    }
+
+    /**
+     * Stores several moves, possibly of different matches, with one multi-row insert.
+     *
+     * @param moves the moves to store
+     * @throws SQLException if the moves cannot be written
+     */
+    public void insertAll(List<Move> moves) throws SQLException {
+        if (moves.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_MOVE)) {
+            for (Move move : moves) {
+                statement.setLong(1, move.matchId());
+                statement.setInt(2, move.seq());
+                statement.setInt(3, move.cell());
+                statement.setString(4, Character.toString(move.sign()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } finally {
+            pool.release(connection);
+            roundTrip.recordSince(start);
+        }
+    }
+
+    /**
+     * The Move record is one row of the match_moves table.
+     *
+     * @param matchId the id of the match
+     * @param seq     the sequence number of the move in the match, starting at 1
+     * @param cell    the index of the cell
+     * @param sign    the symbol (X or O) of the player
+     */
+    public record Move(long matchId, int seq, int cell, char sign) {
+    }
+
+    /**
+     * Lazily connects the shared move store the first time it is used.
+     */
+    private static final class Holder {
+        private static final MoveStore INSTANCE = create();
+
+        private static MoveStore create() {
+            try {
+                // Register JDBC driver
+                Class.forName("com.mysql.cj.jdbc.Driver");
+                return new MoveStore(new ConnectionPool(URL, USERNAME, PASSWORD, POOL_SIZE, BORROW_TIMEOUT_MILLIS));
+            } catch (ClassNotFoundException | SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
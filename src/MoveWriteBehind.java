@@ -0,0 +1,253 @@
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The MoveWriteBehind class writes moves to the database in the background, so a player never waits for the
+ * database before their move is drawn.
+ * Moves of all matches go into one bounded queue. A single writer thread takes whatever has piled up, up to a
+ * batch size, and stores it with one multi-row insert, so under load many moves share a round trip.
+ * <p>
+ * When the database falls behind and the queue is full, {@link #submit(MoveStore.Move)} waits for space (backpressure)
+ * instead of letting the queue grow without limit. Callers that must never wait, like the Event Dispatch Thread, use
+ * {@link #submitAsync(MoveStore.Move)}, which hands the move to a background thread that waits in their place. If the database refuses some rows of a batch, the moves of the
+ * batch are written again one at a time, so only the refused moves are lost.
+ * {@link #close()} first waits for the moves that are still being handed off, then writes every queued move before it
+ * returns. The shared instance is closed by a shutdown hook, so accepted moves are not lost when the game exits.
+ */
+public class MoveWriteBehind implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_SUBMIT_TIMEOUT_MILLIS = 2000;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 200;
+    private static final long HAND_OFF_DRAIN_MILLIS = 10_000;
+
+    private final Sink sink;
+    private final BlockingQueue<MoveStore.Move> queue;
+    private final int batchSize;
+    private final long submitTimeoutMillis;
+    private final Thread writer;
+    private final ExecutorService handOff = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "move-hand-off");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new MoveWriteBehind and starts its writer thread.
+     *
+     * @param sink                where the batches are written, usually {@link MoveStore#insertAll(List)}
+     * @param capacity            the maximum number of queued moves
+     * @param batchSize           the maximum number of moves written at once
+     * @param submitTimeoutMillis how long {@link #submit(MoveStore.Move)} waits for space in a full queue
+     */
+    public MoveWriteBehind(Sink sink, int capacity, int batchSize, long submitTimeoutMillis) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        writer = new Thread(this::writeBatches, "move-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the write-behind queue shared by all matches of the process, in front of the shared move store.
+     *
+     * @return the shared write-behind queue
+     */
+    public static MoveWriteBehind getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Queues a move to be written. Returns right away unless the queue is full.
+     *
+     * @param move the move to write
+     * @throws IllegalStateException if the queue is closed, or stayed full for longer than the submit timeout
+     */
+    public void submit(MoveStore.Move move) {
+        if (closed) {
+            throw new IllegalStateException("The move writer is closed");
+        }
+        try {
+            if (!queue.offer(move, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("The database is not keeping up, the move queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a move", e);
+        }
+    }
+
+    /**
+     * Queues a move to be written from a background thread, and returns right away even if the queue is full.
+     * Moves handed off this way are queued in the order they were submitted. A move that still does not fit after
+     * the submit timeout is lost and counted in the {@value Metrics#DB_MOVES_LOST} counter.
+     *
+     * @param move the move to write
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void submitAsync(MoveStore.Move move) {
+        try {
+            handOff.execute(() -> {
+                try {
+                    submit(move);
+                } catch (IllegalStateException e) {
+                    Metrics.counter(Metrics.DB_MOVES_LOST).increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The move writer is closed", e);
+        }
+    }
+
+    /**
+     * Takes batches from the queue and writes them until the writer is closed and the queue is empty.
+     */
+    private void writeBatches() {
+        List<MoveStore.Move> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                MoveStore.Move first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // close() does not interrupt the writer, keep writing until the queue is drained
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<MoveStore.Move> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sink.write(batch);
+                return;
+            } catch (BatchUpdateException e) {
+                Metrics.counter(Metrics.DB_WRITE_ERRORS).increment();
+                if (batch.size() == 1) {
+                    lose(batch, e); // the row itself is refused, trying again does not help
+                } else {
+                    writeOneByOne(batch, e.getUpdateCounts());
+                }
+                return;
+            } catch (SQLException e) {
+                Metrics.counter(Metrics.DB_WRITE_ERRORS).increment();
+                if (attempt == MAX_ATTEMPTS) {
+                    lose(batch, e);
+                    return;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt(); // keep the flag, but still try the remaining attempts
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the moves of a batch the database refused one at a time, so only the refused rows are lost and not the
+     * moves of the other matches in the batch.
+     *
+     * @param batch        the refused batch
+     * @param updateCounts the result of every row if the driver reports one, otherwise the rows are all written again
+     */
+    private void writeOneByOne(List<MoveStore.Move> batch, int[] updateCounts) {
+        boolean perRow = updateCounts != null && updateCounts.length == batch.size();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!perRow || updateCounts[i] == Statement.EXECUTE_FAILED) {
+                write(List.of(batch.get(i)));
+            }
+        }
+    }
+
+    private void lose(List<MoveStore.Move> moves, SQLException e) {
+        Metrics.counter(Metrics.DB_MOVES_LOST).add(moves.size());
+        e.printStackTrace();
+        System.out.println("There was a problem when adding " + moves.size() + " moves to the database");
+    }
+
+    /**
+     * returns the number of moves waiting to be written.
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting moves and waits until every move that was handed off or queued was written.
+     */
+    @Override
+    public void close() {
+        handOff.shutdown();
+        try {
+            if (!handOff.awaitTermination(HAND_OFF_DRAIN_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.out.println("Gave up waiting for moves that were still being handed off");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The Sink interface writes one batch of moves.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * Writes the given moves.
+         *
+         * @param moves the moves to write, in the order they were submitted
+         * @throws SQLException if the moves cannot be written
+         */
+        void write(List<MoveStore.Move> moves) throws SQLException;
+    }
+
+    /**
+     * Lazily creates the shared write-behind queue the first time it is used, and flushes it when the JVM exits.
+     * Creating it does not connect to the database.
+     */
+    private static final class Holder {
+        private static final MoveWriteBehind INSTANCE = create();
+
+        private static MoveWriteBehind create() {
+            MoveWriteBehind writeBehind = new MoveWriteBehind(Holder::insertAll, DEFAULT_CAPACITY,
+                    DEFAULT_BATCH_SIZE, DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+            Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close, "move-writer-flush"));
+            return writeBehind;
+        }
+
+        /**
+         * Writes to the shared move store, which connects on the writer thread the first time moves are written.
+         */
+        private static void insertAll(List<MoveStore.Move> moves) throws SQLException {
+            MoveStore store;
+            try {
+                store = MoveStore.getInstance();
+            } catch (RuntimeException | LinkageError e) {
+                throw new SQLException("The move store cannot be opened", e);
+            }
+            store.insertAll(moves);
+        }
+    }
+}
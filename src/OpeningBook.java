@@ -0,0 +1,212 @@
+import java.io.*;
+
+/**
+ * The OpeningBook class holds the perfect-play move and score of every 3x3 position, so the AI player can
+ * answer in constant time without searching.
+ * Positions are seen from the player to move and indexed in base 3 (0 = empty, 1 = player to move, 2 = opponent),
+ * which gives one fixed-size entry per possible board.
+ * The book is generated ahead of time by {@link #main(String[])} and shipped as the resource {@value #RESOURCE}.
+ * It is loaded lazily, the first time an AI game asks for it. If the resource is missing it is generated in memory.
+ */
+public final class OpeningBook {
+
+    public static final String RESOURCE = "/opening-book.bin";
+
+    /**
+     * Returned by {@link #bestMove(int, int)} for positions that are already decided.
+     */
+    public static final int NO_MOVE = -1;
+
+    private static final int MAGIC = 0x54545442; // "TTTB"
+    private static final int VERSION = 1;
+    private static final int POSITION_COUNT = 19683; // 3^9
+
+    /**
+     * BASE3[board] is the base 3 value of a bitboard, with a digit of 1 for every occupied cell.
+     */
+    private static final int[] BASE3 = new int[GameState.FULL_BOARD + 1];
+
+    static {
+        for (int board = 0; board <= GameState.FULL_BOARD; board++) {
+            int value = 0;
+            for (int cell = GameState.CELL_COUNT - 1; cell >= 0; cell--) {
+                value = value * 3 + ((board >> cell) & 1);
+            }
+            BASE3[board] = value;
+        }
+    }
+
+    private final byte[] moves;
+    private final byte[] scores;
+
+    private OpeningBook(byte[] moves, byte[] scores) {
+        this.moves = moves;
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the opening book, loading it on first use.
+     *
+     * @return the shared opening book
+     */
+    public static OpeningBook getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the best move for the player to move.
+     *
+     * @param mine   the bitboard of the player to move
+     * @param theirs the bitboard of the other player
+     * @return the index of the best cell, or NO_MOVE if a player has already won or the board is full
+     */
+    public int bestMove(int mine, int theirs) {
+        return moves[index(mine, theirs)];
+    }
+
+    /**
+     * Returns the score of the position for the player to move, with the same scale as the AI search:
+     * positive if the player to move wins, negative if they lose, 0 for a draw.
+     *
+     * @param mine   the bitboard of the player to move
+     * @param theirs the bitboard of the other player
+     * @return the score of the position
+     */
+    public int score(int mine, int theirs) {
+        return scores[index(mine, theirs)];
+    }
+
+    private static int index(int mine, int theirs) {
+        return BASE3[mine] + 2 * BASE3[theirs];
+    }
+
+    /**
+     * Loads the opening book from the {@value #RESOURCE} resource, or generates it if the resource is missing.
+     *
+     * @return the opening book
+     */
+    static OpeningBook load() {
+        try (InputStream in = OpeningBook.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                return generate();
+            }
+            return read(new DataInputStream(new BufferedInputStream(in)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the opening book", e);
+        }
+    }
+
+    /**
+     * Reads an opening book in the binary format written by {@link #write(DataOutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the opening book
+     * @throws IOException if the stream cannot be read or is not an opening book
+     */
+    static OpeningBook read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != POSITION_COUNT) {
+            throw new IOException("Not an opening book of version " + VERSION);
+        }
+        byte[] moves = new byte[POSITION_COUNT];
+        byte[] scores = new byte[POSITION_COUNT];
+        in.readFully(moves);
+        in.readFully(scores);
+        return new OpeningBook(moves, scores);
+    }
+
+    /**
+     * Writes the opening book in its binary format: a header (magic, version, entry count),
+     * followed by one move byte per position and one score byte per position.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(POSITION_COUNT);
+        out.write(moves);
+        out.write(scores);
+    }
+
+    /**
+     * Solves every position of the board.
+     *
+     * @return the generated opening book
+     */
+    static OpeningBook generate() {
+        byte[] moves = new byte[POSITION_COUNT];
+        byte[] scores = new byte[POSITION_COUNT];
+        boolean[] solved = new boolean[POSITION_COUNT];
+
+        for (int mine = 0; mine <= GameState.FULL_BOARD; mine++) {
+            for (int theirs = 0; theirs <= GameState.FULL_BOARD; theirs++) {
+                if ((mine & theirs) == 0) {
+                    solve(mine, theirs, moves, scores, solved);
+                }
+            }
+        }
+        return new OpeningBook(moves, scores);
+    }
+
+    /**
+     * Solves a position with a plain negamax search, memoized in the given arrays.
+     * Moves are tried in the same order as the AI search, so ties are broken the same way.
+     *
+     * @return the score of the position for the player to move
+     */
+    private static int solve(int mine, int theirs, byte[] moves, byte[] scores, boolean[] solved) {
+        int index = index(mine, theirs);
+        if (solved[index]) {
+            return scores[index];
+        }
+
+        int occupied = mine | theirs;
+        int bestMove = NO_MOVE;
+        int bestScore;
+        if (GameState.isWin(theirs)) {
+            bestScore = -(1 + Integer.bitCount(~occupied & GameState.FULL_BOARD));
+        } else if (GameState.isWin(mine) || occupied == GameState.FULL_BOARD) {
+            bestScore = 0; // not reachable with this player to move, or a draw
+        } else {
+            bestScore = Integer.MIN_VALUE;
+            for (int move : TicTacToeEnemy.MOVE_ORDER) {
+                int bit = 1 << move;
+                if ((occupied & bit) != 0) {
+                    continue;
+                }
+                int score = -solve(theirs, mine | bit, moves, scores, solved);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = move;
+                }
+            }
+        }
+
+        moves[index] = (byte) bestMove;
+        scores[index] = (byte) bestScore;
+        solved[index] = true;
+        return bestScore;
+    }
+
+    /**
+     * Generates the opening book and writes it to a file, so it can be shipped as a resource.
+     *
+     * @param args the output file (defaults to src/opening-book.bin)
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args.length > 0 ? args[0] : "src" + RESOURCE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            generate().write(out);
+        }
+        System.out.println("Wrote the opening book to " + file);
+    }
+
+    /**
+     * Lazily loads the opening book the first time it is used.
+     */
+    private static final class Holder {
+        private static final OpeningBook INSTANCE = load();
+    }
+}
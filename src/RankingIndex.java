@@ -0,0 +1,92 @@
+/**
+ * The RankingIndex class counts players per rating in a Fenwick tree (binary indexed tree), so the rank of a rating
+ * and the rating at a rank are found in O(log r) steps, where r is the number of possible ratings, no matter how
+ * many players there are. Ratings are clamped to 0..{@value Matchmaker#MAX_RATING}.
+ * The class is not thread-safe.
+ */
+public class RankingIndex {
+
+    private final int[] tree = new int[Matchmaker.MAX_RATING + 2]; // 1-based, the best rating first
+    private int size;
+
+    /**
+     * Adds a player with the given rating.
+     *
+     * @param rating the rating
+     */
+    public void add(int rating) {
+        update(position(rating), 1);
+        size++;
+    }
+
+    /**
+     * Removes a player with the given rating.
+     *
+     * @param rating the rating the player was added with
+     */
+    public void remove(int rating) {
+        update(position(rating), -1);
+        size--;
+    }
+
+    /**
+     * Counts the players with a higher rating.
+     *
+     * @param rating the rating
+     * @return the number of players rated above it
+     */
+    public int countAbove(int rating) {
+        int count = 0;
+        for (int i = position(rating) - 1; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Finds the rating of the player at the given rank, counting from the best player.
+     *
+     * @param rank the rank, starting at 1
+     * @return the rating at that rank
+     * @throws IndexOutOfBoundsException if there are fewer players than the rank
+     */
+    public int ratingAt(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size + " players");
+        }
+        int position = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return Matchmaker.MAX_RATING - position; // position + 1 is the position of the rating
+    }
+
+    /**
+     * returns the number of players in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Maps a rating to its position in the tree, with the best rating at position 1.
+     */
+    private static int position(int rating) {
+        return Matchmaker.MAX_RATING - clamp(rating) + 1;
+    }
+
+    static int clamp(int rating) {
+        return Math.max(0, Math.min(Matchmaker.MAX_RATING, rating));
+    }
+
+    private void update(int position, int delta) {
+        for (int i = position; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+}
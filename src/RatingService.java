@@ -0,0 +1,173 @@
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RatingService class keeps the Elo rating and the wins, losses and draws of every player, and ranks them.
+ * The ratings live in memory and are indexed by a {@link RankingIndex}, so the rank of a player and the top players
+ * are found in O(log r) steps per player, where r is the number of possible ratings.
+ * <p>
+ * If the service has a {@link RatingStore}, it loads all ratings when it is created, and writes the ratings that
+ * changed to the store in the background every {@value #SAVE_INTERVAL_MILLIS} ms. A player who plays several games
+ * in that time is written once, with their latest values. Closing the service writes the last changes.
+ * The class is thread-safe.
+ */
+public class RatingService implements AutoCloseable {
+
+    public static final int INITIAL_RATING = Matchmaker.DEFAULT_RATING;
+    public static final int K_FACTOR = 32;
+
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+
+    private final Map<String, RatingStore.Rating> ratings = new HashMap<>();
+    private final RankingIndex index = new RankingIndex();
+    private final List<Set<String>> playersByRating = new ArrayList<>(); // per rating, first to reach it first
+    private final RatingStore store;
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private final MatchScope scope = new MatchScope();
+
+    {
+        for (int rating = 0; rating <= Matchmaker.MAX_RATING; rating++) {
+            playersByRating.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Constructs a new RatingService that only keeps the ratings in memory.
+     */
+    public RatingService() {
+        store = null;
+    }
+
+    /**
+     * Constructs a new RatingService that loads the ratings from the given store and writes changes back to it.
+     *
+     * @param store the store of the ratings
+     * @throws SQLException if the ratings cannot be loaded
+     */
+    public RatingService(RatingStore store) throws SQLException {
+        this.store = store;
+        for (RatingStore.Rating rating : store.loadAll()) {
+            put(rating);
+        }
+        scope.scheduleWithFixedDelay(this::save, SAVE_INTERVAL_MILLIS, SAVE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Records the result of a game and updates the ratings of both players.
+     *
+     * @param playerX the name of the player who played X
+     * @param playerO the name of the player who played O
+     * @param winner  the symbol of the winner, or EMPTY for a draw
+     */
+    public synchronized void recordGame(String playerX, String playerO, char winner) {
+        if (playerX.equals(playerO)) {
+            throw new IllegalArgumentException("A player cannot play against themselves: " + playerX);
+        }
+        RatingStore.Rating x = getRating(playerX);
+        RatingStore.Rating o = getRating(playerO);
+        double scoreX = winner == GameState.X ? 1 : winner == GameState.O ? 0 : 0.5;
+        double expectedX = 1 / (1 + Math.pow(10, (o.rating() - x.rating()) / 400.0));
+        int change = (int) Math.round(K_FACTOR * (scoreX - expectedX));
+        put(result(x, x.rating() + change, scoreX));
+        put(result(o, o.rating() - change, 1 - scoreX));
+        changed.add(playerX);
+        changed.add(playerO);
+    }
+
+    private static RatingStore.Rating result(RatingStore.Rating before, int rating, double score) {
+        return new RatingStore.Rating(before.player(), rating, before.wins() + (score == 1 ? 1 : 0),
+                before.losses() + (score == 0 ? 1 : 0), before.draws() + (score == 0.5 ? 1 : 0));
+    }
+
+    /**
+     * Returns the rating of a player. Players who have not played yet have the initial rating.
+     *
+     * @param player the name of the player
+     * @return the rating and results of the player
+     */
+    public synchronized RatingStore.Rating getRating(String player) {
+        RatingStore.Rating rating = ratings.get(player);
+        return rating != null ? rating : new RatingStore.Rating(player, INITIAL_RATING, 0, 0, 0);
+    }
+
+    /**
+     * Returns the rank of a player: 1 for the best player, and players with the same rating share a rank.
+     *
+     * @param player the name of the player
+     * @return the rank, or 0 if the player has not played yet
+     */
+    public synchronized int getRank(String player) {
+        RatingStore.Rating rating = ratings.get(player);
+        return rating == null ? 0 : index.countAbove(rating.rating()) + 1;
+    }
+
+    /**
+     * Returns the best players, best first.
+     *
+     * @param count the maximum number of players
+     * @return the ratings of the best players
+     */
+    public synchronized List<RatingStore.Rating> getTop(int count) {
+        List<RatingStore.Rating> top = new ArrayList<>(Math.min(count, index.size()));
+        while (top.size() < count && top.size() < index.size()) {
+            int rating = index.ratingAt(top.size() + 1);
+            for (String player : playersByRating.get(RankingIndex.clamp(rating))) {
+                if (top.size() == count) {
+                    break;
+                }
+                top.add(ratings.get(player));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * returns the number of players who have played at least one game.
+     */
+    public synchronized int getPlayerCount() {
+        return ratings.size();
+    }
+
+    private void put(RatingStore.Rating rating) {
+        RatingStore.Rating previous = ratings.put(rating.player(), rating);
+        if (previous != null) {
+            index.remove(previous.rating());
+            playersByRating.get(RankingIndex.clamp(previous.rating())).remove(previous.player());
+        }
+        index.add(rating.rating());
+        playersByRating.get(RankingIndex.clamp(rating.rating())).add(rating.player());
+    }
+
+    /**
+     * Writes the ratings that changed since the last save to the store.
+     */
+    private void save() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<RatingStore.Rating> batch = new ArrayList<>();
+        for (Iterator<String> players = changed.iterator(); players.hasNext(); ) {
+            String player = players.next();
+            players.remove();
+            batch.add(getRating(player));
+        }
+        try {
+            store.saveAll(batch);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            batch.forEach(rating -> changed.add(rating.player())); // tried again with the next save
+        }
+    }
+
+    /**
+     * Stops the background saves and writes the last changes to the store.
+     */
+    @Override
+    public void close() {
+        scope.close();
+        if (store != null) {
+            save();
+        }
+    }
+}
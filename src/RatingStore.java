@@ -0,0 +1,133 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RatingStore class stores the rating and the results of every player in the player_ratings table of the MySQL
+ * database, one row per player. Rows are written with an upsert, so saving a player twice keeps the latest values.
+ */
+public class RatingStore {
+
+    static final int POOL_SIZE = 2;
+
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS player_ratings ("
+            + "player VARCHAR(64) NOT NULL PRIMARY KEY, "
+            + "rating INT NOT NULL, "
+            + "wins INT NOT NULL, "
+            + "losses INT NOT NULL, "
+            + "draws INT NOT NULL)";
+    static final String SELECT_ALL = "SELECT player, rating, wins, losses, draws FROM player_ratings";
+    static final String UPSERT = "INSERT INTO player_ratings (player, rating, wins, losses, draws) "
+            + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+            + "rating = VALUES(rating), wins = VALUES(wins), losses = VALUES(losses), draws = VALUES(draws)";
+
+    private final ConnectionPool pool;
+
+    /**
+     * Constructs a new RatingStore that uses the given pool and creates the ratings table if it does not exist.
+     *
+     * @param pool the pool to borrow connections from
+     * @throws SQLException if the table cannot be created
+     */
+    public RatingStore(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        Connection connection = pool.borrow();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_TABLE);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Returns the rating store of the process, connecting on first use.
+     *
+     * @return the shared rating store
+     */
+    public static RatingStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the ratings of all players.
+     *
+     * @return the ratings
+     * @throws SQLException if the database cannot be read
+     */
+    public List<Rating> loadAll() throws SQLException {
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ALL);
+             ResultSet resultSet = statement.executeQuery()) {
+            List<Rating> ratings = new ArrayList<>();
+            while (resultSet.next()) {
+                ratings.add(new Rating(resultSet.getString(1), resultSet.getInt(2), resultSet.getInt(3),
+                        resultSet.getInt(4), resultSet.getInt(5)));
+            }
+            return ratings;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Stores the ratings of several players with one multi-row upsert.
+     *
+     * @param ratings the ratings to store
+     * @throws SQLException if the ratings cannot be written
+     */
+    public void saveAll(List<Rating> ratings) throws SQLException {
+        if (ratings.isEmpty()) {
+            return;
+        }
+        Connection connection = pool.borrow();
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+            for (Rating rating : ratings) {
+                statement.setString(1, rating.player());
+                statement.setInt(2, rating.rating());
+                statement.setInt(3, rating.wins());
+                statement.setInt(4, rating.losses());
+                statement.setInt(5, rating.draws());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * The Rating record is one row of the player_ratings table.
+     *
+     * @param player the name of the player
+     * @param rating the Elo rating
+     * @param wins   the number of games won
+     * @param losses the number of games lost
+     * @param draws  the number of games drawn
+     */
+    public record Rating(String player, int rating, int wins, int losses, int draws) {
+
+        /**
+         * returns the number of games played.
+         */
+        public int games() {
+            return wins + losses + draws;
+        }
+    }
+
+    /**
+     * Lazily connects the shared rating store the first time it is used.
+     */
+    private static final class Holder {
+        private static final RatingStore INSTANCE = create();
+
+        private static RatingStore create() {
+            try {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+                return new RatingStore(new ConnectionPool(MoveStore.URL, MoveStore.USERNAME, MoveStore.PASSWORD,
+                        POOL_SIZE, MoveStore.BORROW_TIMEOUT_MILLIS));
+            } catch (ClassNotFoundException | SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SocketMoveChannel class is the client side of the {@link GameServer}.
+ * It joins one match of the server, or asks the server's matchmaker for an opponent, and exchanges moves in the
+ * binary format of {@link MoveProtocol}. It can also watch a match as a spectator, which receives the moves of both
+ * players and the snapshots the server publishes, but cannot make moves.
+ * <p>
+ * All I/O runs on the shared {@link ClientEventLoop}, so no method of this class waits for the network:
+ * {@link #sendMove(int, char)} only queues the move, and moves of the opponent are handed to the listener on the
+ * loop thread as soon as the server pushes them. Moves that queue up while a frame is being written are sent
+ * together in the next frame.
+ * <p>
+ * The player's own moves are shown before the server confirms them. They stay pending until the server confirms
+ * them; if the server refuses one, it and all later pending moves are dropped, and the snapshot the server sends
+ * with the refusal is handed to the listener, which rolls the board back. If the connection is lost, the channel
+ * reconnects with a growing delay and joins the match again, or asks for an opponent again if it had none yet;
+ * moves that were not confirmed yet are sent again after the reconnect.
+ * The reconnection timer runs in the {@link MatchScope} of the channel and is cancelled when the channel is closed.
+ * The time from queueing a move to its confirmation is recorded in the {@value Metrics#MOVE_ROUND_TRIP} histogram.
+ */
+public class SocketMoveChannel implements MoveChannel, MoveProtocol.Handler {
+
+    private static final int MAX_MOVES_PER_FRAME = 64;
+    private static final long INITIAL_RECONNECT_DELAY_MILLIS = 100;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 5000;
+
+    private final ClientEventLoop loop = ClientEventLoop.getInstance();
+    private final MatchScope scope = new MatchScope();
+    private final Histogram roundTrip = Metrics.histogram(Metrics.MOVE_ROUND_TRIP);
+    private final LongAdder refused = Metrics.counter(Metrics.CLIENT_REQUESTS_REFUSED);
+    private final InetSocketAddress address;
+    private final String player;
+    private volatile Listener listener;
+    private volatile boolean closed;
+
+    // Only touched on the loop thread
+    private long matchId;
+    private char symbol;
+    private boolean inMatch; // false while waiting for the matchmaker
+    private final ByteBuffer in = ByteBuffer.allocate(MoveProtocol.MAX_FRAME_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocate(MoveProtocol.MAX_FRAME_SIZE);
+    private int[] pendingSeqs = new int[4]; // own moves the server has not confirmed yet, oldest first
+    private int[] pendingCells = new int[4];
+    private long[] pendingSentNanos = new long[4];
+    private int pendingCount;
+    private int writtenCount; // pending moves already put into a frame on the current connection
+    private int lastSeq; // the sequence number of the last move of the match, including pending moves
+    private SocketChannel socket;
+    private SelectionKey key;
+    private boolean connected;
+    private boolean joined; // whether the join, watch or queue message was put into a frame on the current connection
+    private long reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+
+    /**
+     * Constructs a new SocketMoveChannel that connects to the game server at the given address in the background,
+     * and joins the given match as an anonymous player, whose games are not rated.
+     *
+     * @param host    the host name of the game server
+     * @param port    the port of the game server
+     * @param matchId the id of the match to join
+     * @param symbol  the symbol (X or O) this player plays in the match, or EMPTY to watch the match
+     */
+    public SocketMoveChannel(String host, int port, long matchId, char symbol) {
+        this(host, port, matchId, symbol, "");
+    }
+
+    /**
+     * Constructs a new SocketMoveChannel that connects to the game server at the given address in the background,
+     * and joins the given match.
+     *
+     * @param host    the host name of the game server
+     * @param port    the port of the game server
+     * @param matchId the id of the match to join
+     * @param symbol  the symbol (X or O) this player plays in the match, or EMPTY to watch the match
+     * @param player  the name of this player, whose games the server rates, or an empty string
+     * @throws IllegalArgumentException if the name is longer than {@value MoveProtocol#MAX_NAME_LENGTH} bytes
+     */
+    public SocketMoveChannel(String host, int port, long matchId, char symbol, String player) {
+        address = new InetSocketAddress(host, port);
+        this.matchId = matchId;
+        this.symbol = symbol;
+        inMatch = true;
+        this.player = checkName(player);
+        loop.execute(this::connect);
+    }
+
+    /**
+     * Constructs a new SocketMoveChannel that connects to the game server at the given address in the background,
+     * and asks it for an opponent. The server finds one of similar strength by the rating it keeps for the player.
+     * The listener is told the match and symbol once the server found one.
+     *
+     * @param host   the host name of the game server
+     * @param port   the port of the game server
+     * @param player the name of this player, or an empty string to play unrated
+     * @throws IllegalArgumentException if the name is longer than {@value MoveProtocol#MAX_NAME_LENGTH} bytes
+     */
+    public SocketMoveChannel(String host, int port, String player) {
+        address = new InetSocketAddress(host, port);
+        this.player = checkName(player);
+        loop.execute(this::connect);
+    }
+
+    private static String checkName(String player) {
+        if (player.getBytes(StandardCharsets.UTF_8).length > MoveProtocol.MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("The name is too long: " + player);
+        }
+        return player;
+    }
+
+    /**
+     * Starts connecting to the server. Runs on the loop thread.
+     */
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        try {
+            socket = SocketChannel.open();
+            socket.configureBlocking(false);
+            socket.socket().setTcpNoDelay(true);
+            boolean done = socket.connect(address);
+            key = loop.register(socket, done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this::onReady);
+            if (done) {
+                onConnected();
+            }
+        } catch (IOException e) {
+            connectionLost();
+        }
+    }
+
+    private void onReady(SelectionKey readyKey) {
+        if (readyKey != key) {
+            return; // an event of a connection that was already lost
+        }
+        try {
+            if (readyKey.isConnectable()) {
+                socket.finishConnect();
+                onConnected();
+                return;
+            }
+            if (readyKey.isReadable()) {
+                read();
+            }
+            if (readyKey.isValid() && readyKey.isWritable()) {
+                flush();
+            }
+        } catch (IOException e) {
+            connectionLost();
+        }
+    }
+
+    private void onConnected() throws IOException {
+        connected = true;
+        reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+        flush();
+    }
+
+    /**
+     * Closes the lost connection and schedules the next attempt to connect.
+     */
+    private void connectionLost() {
+        closeSocket();
+        if (closed) {
+            return;
+        }
+        try {
+            scope.schedule(() -> loop.execute(this::connect), reconnectDelayMillis);
+            Metrics.counter(Metrics.CLIENT_RECONNECTS).increment();
+            reconnectDelayMillis = Math.min(reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        } catch (RejectedExecutionException e) {
+            // the channel was closed in the meantime
+        }
+    }
+
+    /**
+     * Reads what the server pushed and handles every complete frame.
+     */
+    private void read() throws IOException {
+        if (socket.read(in) < 0) {
+            throw new IOException("The game server closed the connection");
+        }
+        in.flip();
+        MoveProtocol.decode(in, this);
+        in.compact();
+    }
+
+    @Override
+    public void onMove(long matchId, int seq, int cell, char symbol) {
+        lastSeq = Math.max(lastSeq, seq);
+        if (symbol == this.symbol) {
+            if (pendingCount > 0 && pendingSeqs[0] == seq) {
+                roundTrip.recordSince(pendingSentNanos[0]);
+                removePending(0, 1); // confirmed
+            }
+            return;
+        }
+        Listener current = listener;
+        if (current != null) {
+            current.onMove(cell, symbol);
+        }
+    }
+
+    @Override
+    public void onSnapshot(long matchId, int seq, char toMove, GameState state) {
+        int confirmed = 0;
+        while (confirmed < pendingCount && pendingSeqs[confirmed] <= seq) {
+            confirmed++; // included in the snapshot, or made on a board that no longer exists
+        }
+        removePending(0, confirmed);
+
+        // show the moves that are still on their way on top of the snapshot
+        lastSeq = seq;
+        for (int i = 0; i < pendingCount; i++) {
+            int cell = MoveProtocol.cellOf(pendingCells[i]);
+            if (pendingSeqs[i] != lastSeq + 1 || !state.place(cell, symbol)) {
+                removePending(i, pendingCount - i); // would be refused by the server
+                break;
+            }
+            lastSeq++;
+            toMove = GameState.opponent(symbol);
+        }
+
+        Listener current = listener;
+        if (current != null) {
+            current.onSnapshot(state, toMove);
+        }
+    }
+
+    @Override
+    public void onAssign(long matchId, char symbol) {
+        this.matchId = matchId;
+        this.symbol = symbol;
+        inMatch = true;
+        Listener current = listener;
+        if (current != null) {
+            current.onMatchFound(matchId, symbol);
+        }
+    }
+
+    /**
+     * Drops a refused move and all later pending moves. The server sends a snapshot right after the refusal.
+     * Every refusal is counted in the {@value Metrics#CLIENT_REQUESTS_REFUSED} counter.
+     */
+    @Override
+    public void onError(long matchId, byte code, int seq) {
+        refused.increment();
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingSeqs[i] == seq) {
+                removePending(i, pendingCount - i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the frame that is being written, or puts the join, watch or queue message and the pending moves into a new
+     * frame.
+     */
+    private void flush() throws IOException {
+        if (!connected) {
+            return; // sent after the (re)connect
+        }
+        if (out.position() == 0 && (!joined || writtenCount < pendingCount)) {
+            int start = MoveProtocol.beginFrame(out);
+            if (!joined) {
+                if (inMatch && symbol == GameState.EMPTY) {
+                    MoveProtocol.putWatch(out, matchId);
+                } else if (inMatch) {
+                    MoveProtocol.putJoin(out, matchId, symbol, player);
+                } else {
+                    MoveProtocol.putQueue(out, player);
+                }
+                joined = true;
+            }
+            int end = Math.min(pendingCount, writtenCount + MAX_MOVES_PER_FRAME);
+            for (int i = writtenCount; i < end; i++) {
+                MoveProtocol.putMove(out, matchId, pendingSeqs[i], MoveProtocol.cellOf(pendingCells[i]),
+                        MoveProtocol.symbolOf(pendingCells[i]));
+            }
+            writtenCount = end;
+            MoveProtocol.endFrame(out, start);
+        }
+
+        out.flip();
+        socket.write(out);
+        out.compact();
+        if (out.position() > 0) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (writtenCount < pendingCount) {
+            flush();
+        }
+    }
+
+    /**
+     * Removes pending moves, keeping the order of the others.
+     *
+     * @param from  the index of the first move to remove
+     * @param count the number of moves to remove
+     */
+    private void removePending(int from, int count) {
+        System.arraycopy(pendingSeqs, from + count, pendingSeqs, from, pendingCount - from - count);
+        System.arraycopy(pendingCells, from + count, pendingCells, from, pendingCount - from - count);
+        System.arraycopy(pendingSentNanos, from + count, pendingSentNanos, from, pendingCount - from - count);
+        pendingCount -= count;
+        if (writtenCount > from) {
+            writtenCount = Math.max(from, writtenCount - count);
+        }
+    }
+
+    private void addPending(int cell, char symbol) {
+        if (pendingCount == pendingSeqs.length) {
+            pendingSeqs = Arrays.copyOf(pendingSeqs, pendingCount * 2);
+            pendingCells = Arrays.copyOf(pendingCells, pendingCount * 2);
+            pendingSentNanos = Arrays.copyOf(pendingSentNanos, pendingCount * 2);
+        }
+        pendingSeqs[pendingCount] = ++lastSeq;
+        pendingCells[pendingCount] = MoveProtocol.pack(cell, symbol);
+        pendingSentNanos[pendingCount] = System.nanoTime();
+        pendingCount++;
+    }
+
+    private void closeSocket() {
+        connected = false;
+        joined = false;
+        in.clear();
+        out.clear(); // a partly written frame is written again from the start on the next connection
+        writtenCount = 0;
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            socket = null;
+        }
+    }
+
+    /**
+     * Queues a move to be sent. Returns right away.
+     *
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) of the player
+     */
+    @Override
+    public void sendMove(int index, char symbol) {
+        if (closed) {
+            throw new IllegalStateException("The channel is closed");
+        }
+        loop.execute(() -> {
+            addPending(index, symbol);
+            try {
+                flush();
+            } catch (IOException e) {
+                connectionLost();
+            }
+        });
+    }
+
+    /**
+     * Sets the listener. It is called on the loop thread and must hand the move over instead of blocking.
+     *
+     * @param listener the listener to notify
+     */
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Closes the connection and cancels a pending reconnection.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scope.close();
+        loop.execute(this::closeSocket);
+    }
+}
@@ -13,12 +13,23 @@ public class TicTacToe extends JFrame {
     private boolean player = true;
 
     /**
-     * Constructs a new TicTacToe instance.
+     * Constructs a new TicTacToe instance with the classic 3x3 board.
      * Initializes the JFrame with the game board and sets up the necessary components.
      */
     public TicTacToe() {
+        this(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE);
+    }
+
+    /**
+     * Constructs a new TicTacToe instance with the given board size and win length.
+     * Initializes the JFrame with the game board and sets up the necessary components.
+     *
+     * @param size      the number of rows and columns of the board
+     * @param winLength the number of symbols in a row needed to win
+     */
+    public TicTacToe(int size, int winLength) {
         super("The active player is player: X");
-        board = new Board();
+        board = new Board(size, winLength);
         initializeButtons();
     }
 
@@ -27,29 +38,29 @@ public class TicTacToe extends JFrame {
      */
     private void initializeButtons() {
         board.getButtons().forEach(button -> button.addActionListener(e -> {
-            if (board.isFull()) {
+            if (board.isRoundOver()) {
                 board.clearButtons();
                 board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
             } else {
-                makeMove(button);
+                makeMove(board.getButtons().indexOf(button));
                 board.checkBoardState();
             }
         }));
     }
 
     /**
-     * Makes a move by changing the text of the clicked button and updating the active player.
+     * Makes a move by placing the active player's symbol on the clicked cell and updating the active player.
      *
-     * @param button the clicked button
+     * @param index the index of the clicked cell
      */
-    private void makeMove(JButton button) {
-        if (button.getText().equals("")) {
+    private void makeMove(int index) {
+        if (board.isCellEmpty(index)) {
             String activePlayer;
             if (player) {
-                button.setText("O");
+                board.placeSymbol(index, GameState.O);
                 activePlayer = "X";
             } else {
-                button.setText("X");
+                board.placeSymbol(index, GameState.X);
                 activePlayer = "O";
             }
 
@@ -58,7 +69,7 @@ public class TicTacToe extends JFrame {
             setTitle("The active player is player: " + activePlayer + "     " +
                     board.getWinCountX() + " times X has won     " +
                     board.getWinCountO() + " times O has won     " +
-                    "     "  + " times the game concluded in a draw");
+                    board.getDrawCount() + " times the game concluded in a draw");
         }
     }
 }
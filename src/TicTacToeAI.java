@@ -1,20 +1,36 @@
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The TicTacToeAI class represents a Tic-Tac-Toe game with an AI opponent, implemented as a JFrame.
  * It allows the player to play against the AI by clicking on the buttons representing the game board.
  * The game keeps track of the moves made by the player and the AI, and determines the winner or a draw.
  * The class uses Java Swing for the graphical user interface.
+ * The AI opponent thinks on a background thread, so the window stays responsive while it searches.
+ * <p>
+ * On the classic board the AI plays perfectly. On larger boards its engine is chosen by the {@value #ENGINE_PROPERTY}
+ * system property: {@code deepening} (the default) searches with iterative deepening for {@value #THINK_TIME_PROPERTY}
+ * ms per move, and {@code mcts} runs Monte Carlo Tree Search for {@value #PLAYOUTS_PROPERTY} playouts per move,
+ * stopping early once {@value #THINK_TIME_PROPERTY} ms have passed if that property is set.
+ * Setting the {@value #PARALLEL_PROPERTY} system property to {@code true} lets either engine search on all cores.
  * Author: Daniel Dmytryszyn
  */
 public class TicTacToeAI extends JFrame {
 
     private final TicTacToeEnemy enemy; // AI opponent for the game
     private final Board board; // The game board
+    private CompletableFuture<Integer> pendingMove; // The AI move being searched, only accessed on the EDT
 
     public static final String humanChar = "X";
     public static final String aiChar = "O";
 
+    public static final String ENGINE_PROPERTY = "tictactoe.engine";
+    public static final String THINK_TIME_PROPERTY = "tictactoe.thinkTime";
+    public static final String PLAYOUTS_PROPERTY = "tictactoe.playouts";
+    public static final String PARALLEL_PROPERTY = "tictactoe.parallel";
+
     /**
      * Constructs a new TicTacToeAI object.
      * Initializes the JFrame with the title and layout.
@@ -23,10 +39,60 @@ public class TicTacToeAI extends JFrame {
      * Initializes the AI opponent.
      */
     public TicTacToeAI() {
+        this(GameState.CLASSIC_SIZE, GameState.CLASSIC_SIZE);
+    }
+
+    /**
+     * Constructs a new TicTacToeAI object with the given board size and win length.
+     *
+     * @param size      the number of rows and columns of the board
+     * @param winLength the number of symbols in a row needed to win
+     */
+    public TicTacToeAI(int size, int winLength) {
         super("Your Symbol is " + humanChar);
-        board = new Board();
-        enemy = new TicTacToeEnemy(board.getButtons(), aiChar.charAt(0));
+        board = new Board(size, winLength);
+        enemy = createEnemy(board.getGameState(), aiChar.charAt(0));
         initializeButtons();
+        board.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancelPendingMove();
+            }
+        });
+    }
+
+    /**
+     * Creates the AI opponent with the engine chosen by the system properties. An invalid choice is reported and
+     * replaced by the default engine.
+     *
+     * @param state  the game state the AI plays on
+     * @param symbol the symbol of the AI
+     * @return the AI opponent
+     */
+    private static TicTacToeEnemy createEnemy(GameState state, char symbol) {
+        if (state.isClassic()) {
+            return new TicTacToeEnemy(state, symbol); // the opening book beats any budget
+        }
+        boolean parallel = Boolean.getBoolean(PARALLEL_PROPERTY);
+        try {
+            String engine = System.getProperty(ENGINE_PROPERTY, "deepening");
+            if (engine.equalsIgnoreCase("mcts")) {
+                MonteCarloTreeSearch search = new MonteCarloTreeSearch(
+                        Integer.getInteger(PLAYOUTS_PROPERTY, MonteCarloTreeSearch.DEFAULT_PLAYOUTS),
+                        Long.getLong(THINK_TIME_PROPERTY, 0),
+                        parallel ? Runtime.getRuntime().availableProcessors() : 1);
+                return new TicTacToeEnemy(state, symbol, search);
+            }
+            if (!engine.equalsIgnoreCase("deepening")) {
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+            }
+            return new TicTacToeEnemy(state, symbol,
+                    Long.getLong(THINK_TIME_PROPERTY, IterativeDeepeningSearch.DEFAULT_TIME_BUDGET_MILLIS), parallel);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            System.out.println("Using the default engine instead");
+            return new TicTacToeEnemy(state, symbol);
+        }
     }
 
     /**
@@ -34,28 +100,56 @@ public class TicTacToeAI extends JFrame {
      */
     private void initializeButtons() {
         board.getButtons().forEach(button -> button.addActionListener(e -> {
-            if (board.isFull()) {
+            if (board.isRoundOver()) {
+                cancelPendingMove();
                 board.clearButtons();
                 board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
-            } else {
-                makeMove(button);
-                board.checkBoardState();
+            } else if (pendingMove == null) {
+                makeMove(board.getButtons().indexOf(button));
             }
         }));
     }
 
     /**
      * Makes a move on the game board by the human player.
-     * Checks if the button is empty, updates the board, and calls the AI opponent to make a move.
-     * Updates the title of the JFrame with the game statistics.
+     * Checks if the cell is empty, updates the board, and asks the AI opponent for a move
+     * if the round is not over yet. The AI move is placed on the Event Dispatch Thread once it is found;
+     * until then, clicks on the board are ignored.
      *
-     * @param button The button representing the move made by the human player.
+     * @param index The index of the cell chosen by the human player.
      */
-    private void makeMove(JButton button) {
-        if (button.getText().equals("")) {
-            button.setText(humanChar);
+    private void makeMove(int index) {
+        if (!board.placeSymbol(index, humanChar.charAt(0))) {
+            return;
+        }
+        board.checkBoardState();
+        if (board.isRoundOver()) {
+            return;
+        }
+
+        CompletableFuture<Integer> move = enemy.findBestMoveAsync();
+        pendingMove = move;
+        move.whenCompleteAsync((moveIndex, error) -> {
+            if (pendingMove != move) {
+                return; // the round was reset or the window closed while the AI was thinking
+            }
+            pendingMove = null;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            board.placeSymbol(moveIndex, aiChar.charAt(0));
             board.checkBoardState();
-            enemy.makeMove();
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Cancels the AI move that is being searched, if any.
+     */
+    private void cancelPendingMove() {
+        if (pendingMove != null) {
+            pendingMove.cancel(false);
+            pendingMove = null;
         }
     }
 }
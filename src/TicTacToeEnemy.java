@@ -1,5 +1,11 @@
-import javax.swing.*;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * The TicTacToeEnemy class represents an AI opponent for the Tic-Tac-Toe game.
@@ -8,48 +14,214 @@ import java.util.List;
  */
 public class TicTacToeEnemy {
 
-    private final List<JButton> buttons; // List of buttons representing the game board
+    /**
+     * The order in which moves are searched: center first, then corners, then edges.
+     * Strong moves are searched first, so alpha-beta pruning cuts off more of the tree.
+     */
+    static final int[] MOVE_ORDER = {4, 0, 2, 6, 8, 1, 3, 5, 7};
+
+    /**
+     * An upper bound for the absolute value of any score returned by the search.
+     */
+    static final int MAX_SCORE = GameState.CELL_COUNT + 1;
+
+    /**
+     * Runs asynchronous AI moves, so that searches never block the thread that asks for a move.
+     * The threads are daemon threads, so they do not keep the application alive.
+     */
+    private static final ExecutorService MOVE_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new MoveThreadFactory());
+
+    /**
+     * Enough slots for every canonical position of the 3x3 board.
+     */
+    private static final int TABLE_CAPACITY = 1 << 13;
+
+    private final GameState state; // The game state the AI player plays on
     private final char enemySymbol; // Symbol representing the AI player
+    private final char humanSymbol; // Symbol representing the opponent of the AI player
+    private final TranspositionTable table = new TranspositionTable(TABLE_CAPACITY); // Cached scores, kept between moves
+    private final IterativeDeepeningSearch deepeningSearch; // Time-bounded search for boards larger than 3x3
+    private final MonteCarloTreeSearch monteCarloSearch; // Replaces the other searches when set
+    private final Histogram moveTime = Metrics.histogram(Metrics.AI_MOVE);
 
     /**
-     * Constructs a new TicTacToeEnemy object with the given list of buttons and enemy symbol.
+     * Constructs a new TicTacToeEnemy object with the given game state and enemy symbol.
      *
-     * @param buttons     The list of buttons representing the game board.
+     * @param state       The game state the AI player plays on.
      * @param enemySymbol The symbol representing the AI player.
      */
-    public TicTacToeEnemy(List<JButton> buttons, char enemySymbol) {
-        this.buttons = buttons;
+    public TicTacToeEnemy(GameState state, char enemySymbol) {
+        this(state, enemySymbol, IterativeDeepeningSearch.DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructs a new TicTacToeEnemy object with the given game state, enemy symbol and time budget.
+     * The time budget only applies to boards larger than 3x3, which cannot be searched to the end of the game.
+     *
+     * @param state            The game state the AI player plays on.
+     * @param enemySymbol      The symbol representing the AI player.
+     * @param timeBudgetMillis The time the AI player may think per move on large boards, in milliseconds.
+     */
+    public TicTacToeEnemy(GameState state, char enemySymbol, long timeBudgetMillis) {
+        this(state, enemySymbol, timeBudgetMillis, false);
+    }
+
+    /**
+     * Constructs a new TicTacToeEnemy object with the given game state, enemy symbol and time budget.
+     * In parallel mode, the search on large boards uses all cores of the common ForkJoinPool.
+     *
+     * @param state            The game state the AI player plays on.
+     * @param enemySymbol      The symbol representing the AI player.
+     * @param timeBudgetMillis The time the AI player may think per move on large boards, in milliseconds.
+     * @param parallel         true to search root moves in parallel, false to search on the calling thread only.
+     */
+    public TicTacToeEnemy(GameState state, char enemySymbol, long timeBudgetMillis, boolean parallel) {
+        this.state = state;
+        this.enemySymbol = enemySymbol;
+        this.humanSymbol = GameState.opponent(enemySymbol);
+        this.deepeningSearch = state.isClassic() ? null
+                : new IterativeDeepeningSearch(timeBudgetMillis, parallel ? ForkJoinPool.commonPool() : null);
+        this.monteCarloSearch = null;
+    }
+
+    /**
+     * Constructs a new TicTacToeEnemy object that finds its moves with Monte Carlo Tree Search on any board size.
+     *
+     * @param state            The game state the AI player plays on.
+     * @param enemySymbol      The symbol representing the AI player.
+     * @param monteCarloSearch The Monte Carlo Tree Search engine, configured with its playout budget and threads.
+     */
+    public TicTacToeEnemy(GameState state, char enemySymbol, MonteCarloTreeSearch monteCarloSearch) {
+        this.state = state;
         this.enemySymbol = enemySymbol;
+        this.humanSymbol = GameState.opponent(enemySymbol);
+        this.deepeningSearch = null;
+        this.monteCarloSearch = monteCarloSearch;
     }
 
     /**
-     * Makes a move on the game board by the AI player.
-     * Determines the best move using the minimax algorithm and updates the corresponding button.
+     * Makes a move on the game state by the AI player.
+     * Determines the best move and places the enemy symbol on it.
+     *
+     * @return The index of the cell the AI player played on.
      */
-    public void makeMove() {
+    public int makeMove() {
         int moveIndex = findBestMove();
-        buttons.get(moveIndex).setText(Character.toString(enemySymbol));
+        state.place(moveIndex, enemySymbol);
+        return moveIndex;
+    }
+
+    /**
+     * Finds the best move for the AI player.
+     * On the classic board, the move is looked up in the opening book, which holds the perfect-play move of every
+     * position, and only searched for if the book has no move for the position.
+     * On larger boards, the move is found by a time-bounded iterative-deepening search.
+     * If the AI player was created with a Monte Carlo Tree Search engine, that engine is used on every board.
+     *
+     * @return The index of the best move on the board.
+     * @throws IllegalStateException if no valid move is found.
+     */
+    public int findBestMove() {
+        return findBestMove(state);
+    }
+
+    /**
+     * Finds the best move for the AI player on a dedicated executor thread.
+     * The search runs on a snapshot of the game state taken when this method is called, so the caller may keep
+     * using the game state. Cancelling the returned future stops the search as soon as possible.
+     * Only one asynchronous move should be pending per TicTacToeEnemy at a time.
+     *
+     * @return A future that completes with the index of the best move on the board.
+     */
+    public CompletableFuture<Integer> findBestMoveAsync() {
+        GameState snapshot = new GameState(state);
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Future<?> task = MOVE_EXECUTOR.submit(() -> {
+            if (result.isDone()) {
+                return; // cancelled while waiting for a thread
+            }
+            try {
+                result.complete(findBestMove(snapshot, result::isDone));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((move, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the best move for the AI player on the given position.
+     */
+    private int findBestMove(GameState position) {
+        return findBestMove(position, () -> false);
+    }
+
+    /**
+     * Finds the best move for the AI player on the given position, stopping early when the search is cancelled.
+     * Searches are serialized, because the search tables of this AI player are reused between moves.
+     * The time of every move is recorded in the {@value Metrics#AI_MOVE} histogram.
+     */
+    private synchronized int findBestMove(GameState position, BooleanSupplier cancellation) {
+        long start = System.nanoTime();
+        try {
+            return searchMove(position, cancellation);
+        } finally {
+            moveTime.recordSince(start);
+        }
+    }
+
+    private int searchMove(GameState position, BooleanSupplier cancellation) {
+        if (monteCarloSearch != null) {
+            return monteCarloSearch.findBestMove(position, enemySymbol, cancellation);
+        }
+        if (deepeningSearch != null) {
+            return deepeningSearch.findBestMove(position, enemySymbol, cancellation);
+        }
+        int mine = position.getBoard(enemySymbol);
+        int theirs = position.getBoard(humanSymbol);
+        int move = OpeningBook.getInstance().bestMove(mine, theirs);
+        if (move != OpeningBook.NO_MOVE) {
+            return move;
+        }
+        return searchBestMove(mine, theirs);
     }
 
     /**
-     * Finds the best move for the AI player using the minimax algorithm.
+     * Searches for the best move for the AI player using the minimax algorithm with alpha-beta pruning.
+     * The search runs on copies of the bitboards and does not allocate per node.
+     * Scores of positions are cached in a transposition table under their canonical key,
+     * so transposed and symmetric positions are only searched once.
      *
-     * @return The index of the best move in the buttons list.
+     * @return The index of the best move on the board.
      * @throws IllegalStateException if no valid move is found.
      */
-    private int findBestMove() {
+    public int searchBestMove() {
+        return searchBestMove(state.getBoard(enemySymbol), state.getBoard(humanSymbol));
+    }
+
+    /**
+     * Searches for the best move of the player owning the first bitboard.
+     */
+    private int searchBestMove(int mine, int theirs) {
         int bestMove = -1;
-        int bestScore = Integer.MIN_VALUE;
-
-        for (int i = 0; i < buttons.size(); i++) {
-            if (buttons.get(i).getText().isEmpty()) {
-                buttons.get(i).setText(Character.toString(enemySymbol));
-                int score = minimax(false);
-                buttons.get(i).setText("");
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestMove = i;
-                }
+        int alpha = -MAX_SCORE;
+
+        for (int move : MOVE_ORDER) {
+            int bit = 1 << move;
+            if (((mine | theirs) & bit) != 0) {
+                continue;
+            }
+            int score = -alphaBeta(theirs, mine | bit, -MAX_SCORE, -alpha);
+            if (bestMove == -1 || score > alpha) {
+                alpha = score;
+                bestMove = move;
             }
         }
 
@@ -61,89 +233,77 @@ public class TicTacToeEnemy {
     }
 
     /**
-     * Applies the minimax algorithm to determine the best score for the current game state.
+     * Applies the minimax algorithm (in its negamax form) with alpha-beta pruning to score a position
+     * from the point of view of the player to move. Faster wins and slower losses score higher.
+     * Results are looked up in and stored to the transposition table.
      *
-     * @param isMaximizingPlayer true if the AI player is the maximizing player, false otherwise.
-     * @return The best score for the current game state.
-     */
-    private int minimax(boolean isMaximizingPlayer) {
-        if (checkWin(enemySymbol)) {
-            return 1;
-        } else if (checkWin('X')) {
-            return -1;
-        } else if (isBoardFull()) {
+     * @param mine   The bitboard of the player to move.
+     * @param theirs The bitboard of the player who made the last move.
+     * @param alpha  The lower bound of the search window.
+     * @param beta   The upper bound of the search window.
+     * @return The score of the position for the player to move.
+     */
+    private int alphaBeta(int mine, int theirs, int alpha, int beta) {
+        int occupied = mine | theirs;
+        if (GameState.isWin(theirs)) {
+            return -(1 + Integer.bitCount(~occupied & GameState.FULL_BOARD));
+        }
+        if (occupied == GameState.FULL_BOARD) {
             return 0;
         }
 
-        int bestScore;
-        if (isMaximizingPlayer) {
-            bestScore = Integer.MIN_VALUE;
-
-            for (JButton button : buttons) {
-                if (button.getText().isEmpty()) {
-                    button.setText(Character.toString(enemySymbol));
-                    int score = minimax(false);
-                    button.setText("");
-                    bestScore = Math.max(score, bestScore);
-                }
+        int key = BoardSymmetry.canonicalKey(mine, theirs);
+        int entry = table.probe(key);
+        if (entry != TranspositionTable.MISSING) {
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                return score;
             }
+        }
 
-        } else {
-            bestScore = Integer.MAX_VALUE;
+        int originalAlpha = alpha;
 
-            for (JButton button : buttons) {
-                if (button.getText().isEmpty()) {
-                    button.setText("X");
-                    int score = minimax(true);
-                    button.setText("");
-                    bestScore = Math.min(score, bestScore);
+        for (int move : MOVE_ORDER) {
+            int bit = 1 << move;
+            if ((occupied & bit) != 0) {
+                continue;
+            }
+            int score = -alphaBeta(theirs, mine | bit, -beta, -alpha);
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break; // the opponent will never allow this line
                 }
             }
-
         }
-        return bestScore;
+
+        int bound = alpha <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : alpha >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, TranspositionTable.pack(alpha, bound));
+        return alpha;
     }
 
     /**
-     * Checks if the given symbol has won the game.
-     *
-     * @param symbol The symbol to check for a win.
-     * @return true if the symbol has won the game, false otherwise.
-     */
-    private boolean checkWin(char symbol) {
-        // Check rows for a win
-        if (buttons.get(0).getText().equals(Character.toString(symbol)) && buttons.get(1).getText().equals(Character.toString(symbol)) && buttons.get(2).getText().equals(Character.toString(symbol)))
-            return true;
-        if (buttons.get(3).getText().equals(Character.toString(symbol)) && buttons.get(4).getText().equals(Character.toString(symbol)) && buttons.get(5).getText().equals(Character.toString(symbol)))
-            return true;
-        if (buttons.get(6).getText().equals(Character.toString(symbol)) && buttons.get(7).getText().equals(Character.toString(symbol)) && buttons.get(8).getText().equals(Character.toString(symbol)))
-            return true;
-
-        // Check columns for a win
-        if (buttons.get(0).getText().equals(Character.toString(symbol)) && buttons.get(3).getText().equals(Character.toString(symbol)) && buttons.get(6).getText().equals(Character.toString(symbol)))
-            return true;
-        if (buttons.get(1).getText().equals(Character.toString(symbol)) && buttons.get(4).getText().equals(Character.toString(symbol)) && buttons.get(7).getText().equals(Character.toString(symbol)))
-            return true;
-        if (buttons.get(2).getText().equals(Character.toString(symbol)) && buttons.get(5).getText().equals(Character.toString(symbol)) && buttons.get(8).getText().equals(Character.toString(symbol)))
-            return true;
-
-        // Check diagonals for a win
-        if (buttons.get(0).getText().equals(Character.toString(symbol)) && buttons.get(4).getText().equals(Character.toString(symbol)) && buttons.get(8).getText().equals(Character.toString(symbol)))
-            return true;
-        return buttons.get(2).getText().equals(Character.toString(symbol)) && buttons.get(4).getText().equals(Character.toString(symbol)) && buttons.get(6).getText().equals(Character.toString(symbol));
+     * returns the transposition table of this AI player, e.g. to read its hit and miss counters.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
     }
 
     /**
-     * Checks if the game board is full.
-     *
-     * @return true if the game board is full, false otherwise.
+     * Creates the daemon threads of the AI move executor.
      */
-    private boolean isBoardFull() {
-        for (JButton button : buttons) {
-            if (button.getText().isEmpty()) {
-                return false;
-            }
+    private static final class MoveThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ai-move-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
-        return true;
     }
 }
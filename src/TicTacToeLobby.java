@@ -4,7 +4,8 @@ import java.awt.event.WindowEvent;
 
 /**
  * The TicTacToeLobby class represents the lobby window for the Tic-Tac-Toe game.
- * It allows the user to choose a game mode: Human vs. Human, Human vs. Computer, or Online mode.
+ * It allows the user to choose a game mode: Human vs. Human, Human vs. Computer, Online mode,
+ * or Human vs. Human and Human vs. Computer on a large board with five in a row.
  * Author: Daniel Dmytryszyn
  */
 public class TicTacToeLobby extends JFrame {
@@ -12,6 +13,11 @@ public class TicTacToeLobby extends JFrame {
     private final JButton human = new JButton();
     private final JButton computer = new JButton();
     private final JButton online = new JButton();
+    private final JButton large = new JButton();
+    private final JButton largeComputer = new JButton();
+
+    public static final int LARGE_SIZE = 15;
+    public static final int LARGE_WIN_LENGTH = 5;
 
     /**
      * Constructs a new TicTacToeLobby object.
@@ -29,7 +35,7 @@ public class TicTacToeLobby extends JFrame {
      * Sets the layout, bounds, and visibility of the frame.
      */
     private void createUI() {
-        setLayout(new GridLayout(1, 3));
+        setLayout(new GridLayout(1, 5));
         setBounds(300, 200, 1500, 500);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setMinimumSize(new Dimension(getBounds().width, getBounds().height));
@@ -44,9 +50,13 @@ public class TicTacToeLobby extends JFrame {
         this.add(human);
         this.add(computer);
         this.add(online);
+        this.add(large);
+        this.add(largeComputer);
         initializeHuman();
         initializeComputer();
         initializeOnline();
+        initializeLarge();
+        initializeLargeComputer();
     }
 
     /**
@@ -61,18 +71,44 @@ public class TicTacToeLobby extends JFrame {
         human.addActionListener(actionEvent -> new TicTacToe());
     }
 
+    /**
+     * Initializes the "15x15" button.
+     * Sets the font, text, and action for the "15x15" button.
+     * When the button is clicked, it creates a new TicTacToe object with a 15x15 board and five in a row.
+     */
+    private void initializeLarge() {
+        large.setFont(new Font("Arial", Font.BOLD, 50));
+        large.setText("15x15");
+
+        large.addActionListener(actionEvent -> new TicTacToe(LARGE_SIZE, LARGE_WIN_LENGTH));
+    }
+
+    /**
+     * Initializes the "15x15 AI" button.
+     * Sets the font, text, and action for the "15x15 AI" button.
+     * When the button is clicked, it creates a new TicTacToeAI object with a 15x15 board and five in a row.
+     */
+    private void initializeLargeComputer() {
+        largeComputer.setFont(new Font("Arial", Font.BOLD, 50));
+        largeComputer.setText("15x15 AI");
+
+        largeComputer.addActionListener(actionEvent -> new TicTacToeAI(LARGE_SIZE, LARGE_WIN_LENGTH));
+    }
+
     /**
      * Initializes the "Online" button.
      * Sets the font, text, and action for the "Online" button.
-     * When the button is clicked, it creates a new TicTacToeOnline object and closes the lobby window.
+     * When the button is clicked, it opens a TicTacToeOnline game and closes the lobby window.
+     * If the user cancels the prompt for their sign, the lobby stays open.
      */
     private void initializeOnline() {
         online.setFont(new Font("Arial", Font.BOLD, 50));
         online.setText("Online");
 
         online.addActionListener(actionEvent -> {
-            dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
-            new TicTacToeOnline();
+            if (TicTacToeOnline.open() != null) {
+                dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+            }
         });
     }
 
@@ -1,72 +1,225 @@
 import javax.swing.*;
+import java.net.InetSocketAddress;
 
 /**
  * The TicTacToeOnline class represents the online multiplayer version of the Tic-Tac-Toe game.
  * It allows two players to play against each other over a network connection.
+ * Moves are exchanged through a MoveChannel. By default it connects to the game server given by the
+ * {@value #SERVER_PROPERTY} system property (host:port, defaults to localhost and {@value GameServer#DEFAULT_PORT})
+ * and lets the server find an opponent with a rating close to the player's. The player is named by the
+ * {@value #PLAYER_PROPERTY} system property (defaults to the user name); the server rates the games under that name.
+ * If the {@value #MATCH_PROPERTY} system property is set, it joins that match instead and asks the user for their sign.
+ * Setting the {@value #TRANSPORT_PROPERTY} system property to {@code database} uses the legacy database polling instead.
  */
 public class TicTacToeOnline {
 
+    public static final String TRANSPORT_PROPERTY = "tictactoe.transport";
+    public static final String SERVER_PROPERTY = "tictactoe.server";
+    public static final String MATCH_PROPERTY = "tictactoe.match";
+    public static final String PLAYER_PROPERTY = "tictactoe.player";
+
     private final Board board = new Board();
-    private final DatabaseConnector db;
-    private final String sign;
+    private final MoveChannel channel;
+    private String sign;
+
+    /**
+     * Opens an online game that connects with the transport chosen by the system properties.
+     * Prompts the user to enter their sign until they enter X or O, unless the server finds an opponent and chooses
+     * the sign.
+     *
+     * @return the game, or null if the user cancelled the prompt
+     */
+    public static TicTacToeOnline open() {
+        if (usesMatchmaking()) {
+            return new TicTacToeOnline(null);
+        }
+        String sign = askForSign();
+        return sign == null ? null : new TicTacToeOnline(sign);
+    }
+
+    /**
+     * Asks the user for their sign until they enter X or O, in either case.
+     *
+     * @return X or O, or null if the user cancelled the prompt
+     */
+    private static String askForSign() {
+        String message = "Enter your sign (X or O)";
+        while (true) {
+            String input = JOptionPane.showInputDialog(message);
+            if (input == null) {
+                return null;
+            }
+            String sign = input.trim().toUpperCase();
+            if (sign.equals("X") || sign.equals("O")) {
+                return sign;
+            }
+            message = "\"" + input + "\" is not a sign. Enter X or O";
+        }
+    }
+
+    private TicTacToeOnline(String sign) {
+        this(sign, createChannel(sign));
+    }
 
     /**
-     * Constructs a new TicTacToeOnline object.
-     * Initializes the game board, database connector, and player's sign.
-     * Prompts the user to enter their sign (X or O).
+     * Constructs a new TicTacToeOnline object that plays through the given channel.
      * Sets the title of the board and the current player based on the sign.
-     * Initializes the buttons on the board and starts checking for updates from the database.
+     * Initializes the buttons on the board and starts listening for the moves of the opponent.
+     *
+     * @param sign    the sign (X or O) of this player, or null if the channel is still looking for an opponent
+     * @param channel the channel to exchange moves with the opponent
      */
-    public TicTacToeOnline() {
-        db = new DatabaseConnector(board);
-        sign = JOptionPane.showInputDialog("Enter your sign").toUpperCase();
+    public TicTacToeOnline(String sign, MoveChannel channel) {
+        this.channel = channel;
+        if (sign == null) {
+            board.setTitle("Waiting for an opponent");
+            board.setPlayer(false);
+        } else {
+            setSign(sign);
+        }
+
+        initializeButtons();
+        channel.setListener(new MoveChannel.Listener() {
+            @Override
+            public void onMove(int index, char symbol) {
+                SwingUtilities.invokeLater(() -> onOpponentMove(index, symbol));
+            }
+
+            @Override
+            public void onSnapshot(GameState state, char toMove) {
+                SwingUtilities.invokeLater(() -> onSnapshot(state, toMove));
+            }
+
+            @Override
+            public void onMatchFound(long matchId, char symbol) {
+                SwingUtilities.invokeLater(() -> setSign(String.valueOf(symbol)));
+            }
+        });
+    }
+
+    private void setSign(String sign) {
+        this.sign = sign;
         board.setTitle("You are " + sign);
+        board.setPlayer(sign.equalsIgnoreCase("X"));
+    }
 
-        if (sign.equalsIgnoreCase("X")) {
-            board.setPlayer(true);
+    private static boolean usesMatchmaking() {
+        return System.getProperty(MATCH_PROPERTY) == null
+                && !"database".equalsIgnoreCase(System.getProperty(TRANSPORT_PROPERTY));
+    }
+
+    /**
+     * Creates the channel chosen by the {@value #TRANSPORT_PROPERTY} and {@value #SERVER_PROPERTY} system properties.
+     *
+     * @param sign the sign (X or O) of this player, or null to let the server find an opponent
+     * @return the connected channel
+     */
+    private static MoveChannel createChannel(String sign) {
+        long matchId = Long.getLong(MATCH_PROPERTY, 0);
+        if ("database".equalsIgnoreCase(System.getProperty(TRANSPORT_PROPERTY))) {
+            return new DatabaseConnector(sign, matchId);
+        }
+        InetSocketAddress server = serverAddress();
+        if (sign == null) {
+            return new SocketMoveChannel(server.getHostString(), server.getPort(), playerName());
         }
+        return new SocketMoveChannel(server.getHostString(), server.getPort(), matchId, sign.charAt(0), playerName());
+    }
 
-        initializeButtons();
-        db.checkForUpdates(sign);
-        db.task.run();
+    /**
+     * Returns the name of the player given by the {@value #PLAYER_PROPERTY} system property, or the user name.
+     *
+     * @return the name of the player
+     */
+    static String playerName() {
+        return System.getProperty(PLAYER_PROPERTY, System.getProperty("user.name", ""));
+    }
+
+    /**
+     * Returns the address of the game server given by the {@value #SERVER_PROPERTY} system property.
+     *
+     * @return the unresolved address
+     */
+    static InetSocketAddress serverAddress() {
+        String address = System.getProperty(SERVER_PROPERTY, "localhost:" + GameServer.DEFAULT_PORT);
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? address : address.substring(0, colon);
+        int port = colon < 0 ? GameServer.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    /**
+     * Places a move of the opponent on the board. Runs on the Event Dispatch Thread.
+     * If the last round is still shown, the move starts the next round, so the board is reset first.
+     *
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) of the opponent
+     */
+    private void onOpponentMove(int index, char symbol) {
+        if (board.isRoundOver()) {
+            resetBoard();
+        }
+        board.placeSymbol(index, symbol);
+        board.checkBoardState();
+        board.setPlayer(true);
+    }
+
+    /**
+     * Shows the state of the match sent by the server, rolling back moves it refused. Runs on the Event Dispatch Thread.
+     *
+     * @param state  the board
+     * @param toMove the symbol (X or O) of the player to move
+     */
+    private void onSnapshot(GameState state, char toMove) {
+        board.loadState(state);
+        board.setPlayer(toMove == sign.charAt(0));
+    }
+
+    /**
+     * Resets the board for the next round.
+     */
+    private void resetBoard() {
+        board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
+        board.clearButtons();
     }
 
     /**
      * Initializes the buttons on the game board.
      * Adds an action listener to each button to handle the player's moves.
      * If the button is already occupied or it's not the player's turn, the move is ignored.
-     * If a valid move is made, it updates the database with the move and updates the button text accordingly.
+     * If a valid move is made, it updates the button text right away and then sends the move to the opponent.
+     * The server has the final say: a move it refuses is rolled back when its snapshot arrives.
      * Checks the board state for a win or draw condition.
-     * If the board is full, the game is reset after a delay.
+     * The result stays on the board until the next click or the next move of the opponent resets it.
      */
     public void initializeButtons() {
         board.getButtons().forEach(jButton -> jButton.addActionListener(e -> {
-            if (!jButton.getText().equals("") || !board.isPlayer()) {
+            if (board.isRoundOver()) {
+                resetBoard();
                 return;
             }
-
             int index = board.getButtons().indexOf(jButton);
-            db.addMoveToDatabase(index, sign);
+            if (!board.isCellEmpty(index) || !board.isPlayer()) {
+                return;
+            }
 
-            jButton.setText(sign);
+            board.placeSymbol(index, sign.charAt(0));
             board.setPlayer(false);
 
+            channel.sendMove(index, sign.charAt(0));
 
-            board.checkBoardState();
 
-            if (board.isFull()) {
-                db.resetBoard();
-            }
+            board.checkBoardState();
         }));
     }
 
     /**
      * The main method of the TicTacToeOnline class.
-     * It creates a new TicTacToeOnline object, which starts the online multiplayer game.
+     * It opens a new TicTacToeOnline game, which starts the online multiplayer game.
      *
      * @param args The command-line arguments.
      */
     public static void main(String[] args) {
-        new TicTacToeOnline();
+        open();
     }
 }
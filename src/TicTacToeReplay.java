@@ -0,0 +1,106 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TicTacToeReplay class replays a match that was recorded in the {@link GameLog} of the game server.
+ * It reads the moves of the match from the log and shows them on a board one after the other, every
+ * {@value #STEP_MILLIS} ms, round after round. The result of each round stays on the board until the next round
+ * starts.
+ * <p>
+ * Usage: {@code java TicTacToeReplay matchId [directory]}, where the directory of the log defaults to the
+ * {@value GameLog#DIRECTORY_PROPERTY} system property.
+ */
+public class TicTacToeReplay {
+
+    private static final int STEP_MILLIS = 800;
+
+    private final Board board;
+    private final long matchId;
+    private final List<GameLog.Entry> moves;
+    private int next;
+
+    /**
+     * Constructs a new TicTacToeReplay that shows the given moves of a match.
+     *
+     * @param matchId the id of the match
+     * @param moves   the moves of the match, oldest first; not empty
+     */
+    public TicTacToeReplay(long matchId, List<GameLog.Entry> moves) {
+        this.matchId = matchId;
+        this.moves = moves;
+        board = new Board(moves.get(0).size(), moves.get(0).winLength());
+        board.setTitle("Replay of match " + matchId);
+        board.setPlayer(false);
+    }
+
+    /**
+     * Starts stepping through the moves on the Event Dispatch Thread.
+     */
+    public void start() {
+        Timer timer = new Timer(STEP_MILLIS, null);
+        timer.addActionListener(e -> {
+            step();
+            if (next == moves.size()) {
+                timer.stop();
+            }
+        });
+        timer.start();
+    }
+
+    /**
+     * Shows the next move. Runs on the Event Dispatch Thread.
+     */
+    private void step() {
+        GameLog.Entry move = moves.get(next++);
+        boolean newMatch = next > 1 && move.seq() <= moves.get(next - 2).seq(); // the id was used again later
+        if (board.isRoundOver() || newMatch) {
+            board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
+            board.clearButtons();
+        }
+        board.placeSymbol(move.cell(), move.symbol());
+        board.checkBoardState();
+        if (!board.isRoundOver()) {
+            board.setTitle("Replay of match " + matchId + ", move " + next + " of " + moves.size());
+        }
+    }
+
+    /**
+     * Reads the moves of a match from the log.
+     *
+     * @param directory the directory of the log
+     * @param matchId   the id of the match
+     * @return the moves, oldest first
+     * @throws IOException if the log cannot be read
+     */
+    public static List<GameLog.Entry> readMoves(Path directory, long matchId) throws IOException {
+        List<GameLog.Entry> moves = new ArrayList<>();
+        GameLog.scan(directory, entry -> {
+            if (entry.type() == GameLog.MOVE && entry.matchId() == matchId) {
+                moves.add(entry);
+            }
+        });
+        return moves;
+    }
+
+    /**
+     * The main method of the TicTacToeReplay class.
+     * It reads the match given as the first argument from the log and replays it.
+     *
+     * @param args the id of the match and the directory of the log
+     * @throws IOException if the log cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        long matchId = Long.parseLong(args[0]);
+        Path directory = Path.of(args.length > 1 ? args[1]
+                : System.getProperty(GameLog.DIRECTORY_PROPERTY, GameLog.DEFAULT_DIRECTORY));
+        List<GameLog.Entry> moves = readMoves(directory, matchId);
+        if (moves.isEmpty()) {
+            System.out.println("No moves of match " + matchId + " in " + directory.toAbsolutePath());
+            return;
+        }
+        SwingUtilities.invokeLater(() -> new TicTacToeReplay(matchId, moves).start());
+    }
+}
@@ -0,0 +1,81 @@
+import javax.swing.*;
+import java.net.InetSocketAddress;
+
+/**
+ * The TicTacToeSpectator class shows a match that other players play on the game server, live.
+ * It connects to the game server given by the {@value TicTacToeOnline#SERVER_PROPERTY} system property and watches
+ * the match given as the first argument, or by the {@value TicTacToeOnline#MATCH_PROPERTY} system property.
+ * Every move is shown as soon as it is made. The server also sends a snapshot of the match from time to time, and in
+ * place of the moves it skipped if this spectator read too slowly, so the board always catches up with the match.
+ * Clicking the board does nothing.
+ */
+public class TicTacToeSpectator {
+
+    private final Board board = new Board();
+    private final long matchId;
+
+    /**
+     * Constructs a new TicTacToeSpectator that shows the moves and snapshots of the given channel.
+     *
+     * @param matchId the id of the watched match
+     * @param channel the channel watching the match
+     */
+    public TicTacToeSpectator(long matchId, MoveChannel channel) {
+        this.matchId = matchId;
+        board.setTitle("Watching match " + matchId);
+        board.setPlayer(false);
+        channel.setListener(new MoveChannel.Listener() {
+            @Override
+            public void onMove(int index, char symbol) {
+                SwingUtilities.invokeLater(() -> onPlayerMove(index, symbol));
+            }
+
+            @Override
+            public void onSnapshot(GameState state, char toMove) {
+                SwingUtilities.invokeLater(() -> onMatchSnapshot(state, toMove));
+            }
+        });
+    }
+
+    /**
+     * Places a move of one of the players on the board. Runs on the Event Dispatch Thread.
+     *
+     * @param index  the index of the cell
+     * @param symbol the symbol (X or O) of the player
+     */
+    private void onPlayerMove(int index, char symbol) {
+        if (board.isRoundOver()) {
+            board.changeFontSizes(Board.SYMBOL_FONT_SIZE);
+            board.clearButtons(); // the result of the last round stays until the next one starts
+        }
+        board.placeSymbol(index, symbol);
+        board.checkBoardState();
+        if (!board.isRoundOver()) {
+            board.setTitle("Watching match " + matchId + ", " + GameState.opponent(symbol) + " to move");
+        }
+    }
+
+    /**
+     * Replaces the board with the state of the match sent by the server. Runs on the Event Dispatch Thread.
+     *
+     * @param state  the board
+     * @param toMove the symbol (X or O) of the player to move
+     */
+    private void onMatchSnapshot(GameState state, char toMove) {
+        board.loadState(state);
+        board.setTitle("Watching match " + matchId + ", " + toMove + " to move");
+    }
+
+    /**
+     * The main method of the TicTacToeSpectator class.
+     * It starts watching the match given as the first argument or by the system property.
+     *
+     * @param args the id of the match to watch
+     */
+    public static void main(String[] args) {
+        long matchId = args.length > 0 ? Long.parseLong(args[0]) : Long.getLong(TicTacToeOnline.MATCH_PROPERTY, 0);
+        InetSocketAddress server = TicTacToeOnline.serverAddress();
+        new TicTacToeSpectator(matchId,
+                new SocketMoveChannel(server.getHostString(), server.getPort(), matchId, GameState.EMPTY));
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TranspositionTable class caches search results by position key.
+ * Entries are stored in primitive arrays with open addressing (linear probing), so lookups and stores
+ * do not allocate. When all probed slots are taken, the entry in the home slot is replaced.
+ * Every entry holds a score, the kind of bound the score represents and the search depth it was computed with.
+ * <p>
+ * The table can be shared by several search threads without locking. Each slot stores the entry together with
+ * the key XOR-ed with the entry, so a slot that was written by two threads at once (or read while being written)
+ * fails the key check and is treated as a miss instead of returning an entry of another position.
+ */
+public class TranspositionTable {
+
+    /**
+     * Returned by {@link #probe(long)} when the key is not in the table.
+     */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    /**
+     * The largest absolute score an entry can hold.
+     */
+    public static final int MAX_SCORE = (1 << 21) - 1;
+
+    private static final int MAX_PROBES = 8;
+
+    private static final long PRESENT = 1L << 32; // set in every stored entry word, so 0 marks an empty slot
+
+    private final long[] keys; // key ^ entry word
+    private final long[] entries; // PRESENT | entry
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a new TranspositionTable with room for at least the given number of entries.
+     *
+     * @param capacity the minimum number of entries
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        keys = new long[size];
+        entries = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Looks up the entry stored for the given key.
+     *
+     * @param key the key of the position
+     * @return the packed entry, or MISSING if the key is not in the table
+     */
+    public int probe(long key) {
+        int slot = slot(key);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            long entry = entries[slot];
+            if (entry == 0) {
+                break;
+            }
+            if ((keys[slot] ^ entry) == key) {
+                hits.increment();
+                return (int) entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * Stores an entry for the given key, overwriting any entry stored for the same key.
+     *
+     * @param key   the key of the position
+     * @param entry the packed entry, see {@link #pack(int, int)}
+     */
+    public void store(long key, int entry) {
+        long word = PRESENT | (entry & 0xFFFFFFFFL);
+        int home = slot(key);
+        int slot = home;
+        for (int i = 0; ; i++) {
+            long current = entries[slot];
+            if (current == 0 || (keys[slot] ^ current) == key) {
+                break;
+            }
+            if (i == MAX_PROBES - 1) {
+                slot = home;
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        entries[slot] = word;
+        keys[slot] = key ^ word;
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counters.
+     * Must not be called while a search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        Arrays.fill(keys, 0);
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * returns the number of successful lookups.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * returns the number of failed lookups.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * returns the number of slots of the table.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Packs a score and its bound type into a single entry, for searches that always reach the end of the game.
+     *
+     * @param score the score
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @return the packed entry
+     */
+    public static int pack(int score, int bound) {
+        return pack(score, bound, 0);
+    }
+
+    /**
+     * Packs a score, its bound type and the remaining search depth it was computed with into a single entry.
+     * The score must fit in 22 bits (plus or minus {@value #MAX_SCORE}) and the depth in 8 bits.
+     *
+     * @param score the score
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param depth the remaining search depth (0-255)
+     * @return the packed entry
+     */
+    public static int pack(int score, int bound, int depth) {
+        return (score << 10) | (depth << 2) | bound;
+    }
+
+    /**
+     * Returns the score of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return the score
+     */
+    public static int score(int entry) {
+        return entry >> 10;
+    }
+
+    /**
+     * Returns the remaining search depth of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return the depth
+     */
+    public static int depth(int entry) {
+        return (entry >>> 2) & 0xFF;
+    }
+
+    /**
+     * Returns the bound type of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int bound(int entry) {
+        return entry & 3;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads nearby keys over the table
+        return (int) (h >>> 32) & mask;
+    }
+}